@@ -0,0 +1,242 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A process-wide registry of counters, gauges and latency histograms,
+ * rendered in the Prometheus text format.
+ *
+ * Registering a counter or histogram under a name that is already
+ * taken returns the existing one, so every verticle instance can
+ * register its metrics without coordinating with the others.  Gauges
+ * are read from whichever thread serves the scrape, so they must only
+ * read values that are safe to read without synchronization.
+ */
+public class Metrics {
+    private static final Metrics REGISTRY = new Metrics();
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    public static Metrics registry() {
+        return REGISTRY;
+    }
+
+    public synchronized Counter counter(String name, String help) {
+        Family family = family(name, help, "counter");
+
+        if (family.counter == null) {
+            family.counter = new Counter();
+        }
+
+        return family.counter;
+    }
+
+    public synchronized Histogram histogram(String name, String help) {
+        Family family = family(name, help, "histogram");
+
+        if (family.histogram == null) {
+            family.histogram = new Histogram();
+        }
+
+        return family.histogram;
+    }
+
+    /**
+     * Adds a gauge sample.  The labels are written as is, for example
+     * instance="frontend-1", and may be empty.
+     */
+    public synchronized void gauge(String name, String help, String labels, LongSupplier value) {
+        family(name, help, "gauge").gauges.add(new Gauge(labels, value));
+    }
+
+    public synchronized String scrape() {
+        StringBuilder out = new StringBuilder();
+
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+
+            if (family.counter != null) {
+                out.append(family.name).append(' ').append(family.counter.get()).append('\n');
+            } else if (family.histogram != null) {
+                family.histogram.write(family.name, out);
+            } else {
+                for (Gauge gauge : family.gauges) {
+                    out.append(family.name);
+
+                    if (!gauge.labels.isEmpty()) {
+                        out.append('{').append(gauge.labels).append('}');
+                    }
+
+                    out.append(' ').append(gauge.value.getAsLong()).append('\n');
+                }
+            }
+        }
+
+        return out.toString();
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, k -> new Family(name, help, type));
+
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+
+        return family;
+    }
+
+    public static class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Counts durations into fixed buckets from 100 microseconds to 10
+     * seconds.  Recording is lock free and does not allocate.
+     */
+    public static class Histogram {
+        private static final double[] BOUNDS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+            0.1, 0.25, 0.5, 1, 2.5, 5, 10,
+        };
+
+        private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+        private static final String[] BOUND_LABELS = new String[BOUNDS.length];
+
+        static {
+            for (int i = 0; i < BOUNDS.length; i++) {
+                BOUND_NANOS[i] = (long) (BOUNDS[i] * 1e9);
+                BOUND_LABELS[i] = BigDecimal.valueOf(BOUNDS[i]).toPlainString();
+            }
+        }
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+        private final LongAdder sumNanos = new LongAdder();
+
+        public void record(long nanos) {
+            int i = 0;
+
+            while (i < BOUND_NANOS.length && nanos > BOUND_NANOS[i]) {
+                i++;
+            }
+
+            buckets.incrementAndGet(i);
+            sumNanos.add(nanos);
+        }
+
+        public long getCount() {
+            long count = 0;
+
+            for (int i = 0; i < buckets.length(); i++) {
+                count += buckets.get(i);
+            }
+
+            return count;
+        }
+
+        public long getSumNanos() {
+            return sumNanos.sum();
+        }
+
+        /**
+         * Returns the upper bound, in seconds, of the bucket holding
+         * the given quantile, or the largest bound if it lies beyond
+         * every bucket.  Returns 0 if nothing has been recorded.
+         */
+        public double percentile(double quantile) {
+            long count = getCount();
+
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(quantile * count);
+            long cumulative = 0;
+
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulative += buckets.get(i);
+
+                if (cumulative >= rank) {
+                    return BOUNDS[i];
+                }
+            }
+
+            return BOUNDS[BOUNDS.length - 1];
+        }
+
+        void write(String name, StringBuilder out) {
+            long cumulative = 0;
+
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulative += buckets.get(i);
+                out.append(name).append("_bucket{le=\"").append(BOUND_LABELS[i]).append("\"} ")
+                    .append(cumulative).append('\n');
+            }
+
+            cumulative += buckets.get(BOUNDS.length);
+            out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+            out.append(name).append("_sum ").append(sumNanos.sum() / 1e9).append('\n');
+            out.append(name).append("_count ").append(cumulative).append('\n');
+        }
+    }
+
+    private static class Gauge {
+        private final String labels;
+        private final LongSupplier value;
+
+        Gauge(String labels, LongSupplier value) {
+            this.labels = labels;
+            this.value = value;
+        }
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final List<Gauge> gauges = new ArrayList<>();
+        private Counter counter;
+        private Histogram histogram;
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import org.apache.qpid.proton.amqp.Symbol;
+
+/**
+ * The message annotations in which the frontend stamps each request,
+ * and the worker each reply, with wall clock times in milliseconds
+ * since the epoch.  The worker copies the frontend's timestamps from
+ * the request into the reply.
+ */
+public final class TimingAnnotations {
+    public static final Symbol ENQUEUE_TIME = Symbol.valueOf("x-opt-frontend-enqueue-time");
+    public static final Symbol SEND_TIME = Symbol.valueOf("x-opt-frontend-send-time");
+    public static final Symbol RECEIVE_TIME = Symbol.valueOf("x-opt-worker-receive-time");
+    public static final Symbol PROCESS_TIME = Symbol.valueOf("x-opt-worker-process-time");
+    public static final Symbol REPLY_TIME = Symbol.valueOf("x-opt-worker-reply-time");
+
+    private TimingAnnotations() {
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency histograms for each stage of a request, kept separately for
+ * each cloud that replies.  Thread safe.
+ */
+public class CloudLatency {
+    private static final String[] STAGES = {
+        "queued", "outbound", "processing", "replyWait", "inbound", "total",
+    };
+
+    private final Map<String, Metrics.Histogram[]> clouds = new ConcurrentHashMap<>();
+
+    public void record(String cloud, ResponseTiming timing) {
+        Metrics.Histogram[] stages = clouds.computeIfAbsent(cloud, k -> newStages());
+
+        record(stages[0], timing.getQueued());
+        record(stages[1], timing.getOutbound());
+        record(stages[2], timing.getProcessing());
+        record(stages[3], timing.getReplyWait());
+        record(stages[4], timing.getInbound());
+        record(stages[5], timing.getTotal());
+    }
+
+    /**
+     * Summarizes the stages of every cloud, by cloud and then by stage.
+     */
+    public Map<String, Map<String, Summary>> summarize() {
+        Map<String, Map<String, Summary>> result = new TreeMap<>();
+
+        for (Map.Entry<String, Metrics.Histogram[]> entry : clouds.entrySet()) {
+            Map<String, Summary> stages = new LinkedHashMap<>();
+
+            for (int i = 0; i < STAGES.length; i++) {
+                stages.put(STAGES[i], new Summary(entry.getValue()[i]));
+            }
+
+            result.put(entry.getKey(), stages);
+        }
+
+        return result;
+    }
+
+    private static Metrics.Histogram[] newStages() {
+        Metrics.Histogram[] stages = new Metrics.Histogram[STAGES.length];
+
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new Metrics.Histogram();
+        }
+
+        return stages;
+    }
+
+    private static void record(Metrics.Histogram histogram, long millis) {
+        // Clock differences between hosts can make a stage negative
+        histogram.record(Math.max(0, millis) * 1000 * 1000);
+    }
+
+    /**
+     * The count, mean and percentiles of one stage, in milliseconds.
+     * Percentiles are the upper bounds of the histogram buckets they
+     * fall in.
+     */
+    public static class Summary {
+        private final long count;
+        private final double mean;
+        private final double p50;
+        private final double p99;
+
+        Summary(Metrics.Histogram histogram) {
+            this.count = histogram.getCount();
+            this.mean = count == 0 ? 0 : histogram.getSumNanos() / 1e6 / count;
+            this.p50 = histogram.percentile(0.5) * 1000;
+            this.p99 = histogram.percentile(0.99) * 1000;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps rolling latency and throughput figures for each cloud and
+ * picks the cloud to prefer for the next request.
+ *
+ * A cloud's weight is the number of live workers it has on its own
+ * request address divided by its average round trip time, so traffic
+ * favours sites that are both fast and well staffed.  Clouds without
+ * such workers are never chosen.  A cloud with workers but no
+ * measurements yet is assumed to be as fast as the average of the
+ * others.  Whether the preferred cloud can actually take the request
+ * is decided by the caller, from the credit on that cloud's link.
+ *
+ * Instances are not thread safe and must only be used from the
+ * verticle's context.
+ */
+public class CloudRouter {
+    private static final double SMOOTHING = 0.2;
+
+    private final Map<String, CloudStats> clouds = new TreeMap<>();
+
+    private String[] targets = new String[0];
+    private double[] cumulativeWeights = new double[0];
+
+    /**
+     * Records a response from the given cloud, with the time from
+     * sending the request to receiving the response.
+     */
+    public void responded(String cloud, long millis) {
+        CloudStats stats = stats(cloud);
+
+        stats.latency = stats.responses == 0 ? millis : stats.latency + SMOOTHING * (millis - stats.latency);
+        stats.responses++;
+        stats.intervalResponses++;
+    }
+
+    public void sent(String cloud) {
+        stats(cloud).sent++;
+    }
+
+    /**
+     * Records a request that preferred the cloud but went to the
+     * shared address because the cloud had no credit.
+     */
+    public void spilled(String cloud) {
+        stats(cloud).spilled++;
+    }
+
+    /**
+     * Folds the responses of the interval that just ended into the
+     * throughput figures and recomputes the weights from the current
+     * counts of workers listening on each cloud's address.
+     */
+    public void update(Map<String, Integer> workers, long intervalMillis) {
+        for (String cloud : workers.keySet()) {
+            stats(cloud);
+        }
+
+        double latencySum = 0;
+        int measured = 0;
+
+        for (CloudStats stats : clouds.values()) {
+            double rate = stats.intervalResponses * 1000.0 / intervalMillis;
+
+            stats.throughput += SMOOTHING * (rate - stats.throughput);
+            stats.intervalResponses = 0;
+            stats.workers = workers.getOrDefault(stats.cloud, 0);
+
+            if (stats.responses > 0) {
+                latencySum += stats.latency;
+                measured++;
+            }
+        }
+
+        double defaultLatency = measured == 0 ? 1 : latencySum / measured;
+        String[] newTargets = new String[clouds.size()];
+        double[] newWeights = new double[clouds.size()];
+        double total = 0;
+        int i = 0;
+
+        for (CloudStats stats : clouds.values()) {
+            double latency = stats.responses > 0 ? stats.latency : defaultLatency;
+
+            stats.weight = stats.workers / Math.max(1, latency);
+
+            if (stats.weight > 0) {
+                total += stats.weight;
+                newTargets[i] = stats.cloud;
+                newWeights[i] = total;
+                i++;
+            }
+        }
+
+        targets = Arrays.copyOf(newTargets, i);
+        cumulativeWeights = Arrays.copyOf(newWeights, i);
+    }
+
+    /**
+     * Returns the cloud to prefer for the next request, or null if no
+     * cloud has any weight.
+     */
+    public String choose() {
+        if (targets.length == 0) {
+            return null;
+        }
+
+        double point = ThreadLocalRandom.current().nextDouble(cumulativeWeights[targets.length - 1]);
+
+        for (int i = 0; i < targets.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return targets[i];
+            }
+        }
+
+        return targets[targets.length - 1];
+    }
+
+    public Map<String, CloudStats> getClouds() {
+        return Collections.unmodifiableMap(clouds);
+    }
+
+    private CloudStats stats(String cloud) {
+        return clouds.computeIfAbsent(cloud, CloudStats::new);
+    }
+
+    public static class CloudStats {
+        private final String cloud;
+        private int workers;
+        private double latency;
+        private double throughput;
+        private double weight;
+        private long responses;
+        private long intervalResponses;
+        private long sent;
+        private long spilled;
+
+        CloudStats(String cloud) {
+            this.cloud = cloud;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        /**
+         * The moving average of the round trip time, in milliseconds.
+         */
+        public double getLatency() {
+            return latency;
+        }
+
+        /**
+         * The moving average of responses per second.
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public long getResponses() {
+            return responses;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        public long getSpilled() {
+            return spilled;
+        }
+    }
+}
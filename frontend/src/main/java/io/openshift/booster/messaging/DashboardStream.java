@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.core.http.HttpServerResponse;
+import io.vertx.reactivex.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pushes dashboard updates to browsers as server-sent events.
+ *
+ * Changes are coalesced and published on a fixed interval.  Clients
+ * that are caught up all receive the same encoded event, so the cost
+ * of a tick does not grow with the number of clients.  A client whose
+ * connection cannot keep up is skipped until its write queue drains,
+ * and then receives a catch-up event of its own.
+ */
+public class DashboardStream {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DashboardStream.class);
+  private static final long KEEP_ALIVE_INTERVAL = 15 * 1000;
+
+  private final Data data;
+  private final int limit;
+  private final List<Client> clients = new ArrayList<>();
+
+  private long sequence = -1;
+  private long workersVersion = -1;
+  private long lastWrite;
+
+  public DashboardStream(Vertx vertx, Data data, long interval, int limit) {
+    this.data = data;
+    this.limit = limit;
+
+    vertx.setPeriodic(interval, timer -> publish());
+  }
+
+  public void handle(RoutingContext rc) {
+    HttpServerResponse response = rc.response();
+    String lastEventId = rc.request().getHeader("Last-Event-ID");
+    Client client = new Client(response);
+
+    if (lastEventId != null) {
+      try {
+        client.sequence = Long.parseLong(lastEventId);
+      } catch (NumberFormatException e) {
+        client.sequence = -1;
+      }
+    }
+
+    response
+      .setChunked(true)
+      .putHeader("Content-Type", "text/event-stream")
+      .putHeader("Cache-Control", "no-cache");
+
+    response.closeHandler(v -> clients.remove(client));
+    response.drainHandler(v -> catchUp(client));
+
+    clients.add(client);
+    catchUp(client);
+
+    LOGGER.debug("Dashboard client connected ({0} total)", clients.size());
+  }
+
+  public int getClientCount() {
+    return clients.size();
+  }
+
+  private void publish() {
+    long now = System.currentTimeMillis();
+    long version = data.getWorkersVersion();
+
+    if (clients.isEmpty()) {
+      sequence = data.getResponseStore().getSequence();
+      workersVersion = version;
+      return;
+    }
+
+    if (data.getResponseStore().getSequence() == sequence && version == workersVersion) {
+      if (now - lastWrite > KEEP_ALIVE_INTERVAL) {
+        for (Client client : clients) {
+          if (!client.response.writeQueueFull()) {
+            client.response.write(":\n\n");
+          }
+        }
+
+        lastWrite = now;
+      }
+
+      return;
+    }
+
+    long previous = sequence;
+    DataUpdate update = data.getUpdate(previous, limit);
+    Buffer event = encode(update);
+
+    sequence = update.getSequence();
+    workersVersion = version;
+    lastWrite = now;
+
+    for (Client client : clients) {
+      if (client.response.writeQueueFull()) {
+        continue;
+      }
+
+      if (client.sequence == previous) {
+        client.response.write(event);
+        client.sequence = sequence;
+      } else {
+        catchUp(client);
+      }
+    }
+  }
+
+  private void catchUp(Client client) {
+    DataUpdate update = data.getUpdate(client.sequence, limit);
+
+    client.response.write(encode(update));
+    client.sequence = update.getSequence();
+  }
+
+  private static Buffer encode(DataUpdate update) {
+    return Buffer.buffer("id: " + update.getSequence() + "\ndata: " + Json.encode(update) + "\n\n");
+  }
+
+  private static class Client {
+    private final HttpServerResponse response;
+    private long sequence = -1;
+
+    Client(HttpServerResponse response) {
+      this.response = response;
+    }
+  }
+}
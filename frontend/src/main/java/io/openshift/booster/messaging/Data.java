@@ -17,27 +17,65 @@
 
 package io.openshift.booster.messaging;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class Data {
+/**
+ * The state shown on the dashboard.  A single instance is shared by
+ * all frontend verticles in the process, so everything here must be
+ * thread safe.
+ */
+public class Data implements Shareable {
     private final Queue<String> requestIds;
-    private final Map<String, Response> responses;
+    private final AtomicInteger requestIdCount;
+    private final ResponseStore responses;
     private final Map<String, WorkerUpdate> workers;
+    private final AtomicLong workersVersion;
+    private final CloudLatency latency;
+    private final WorkerRates rates;
 
-    public Data() {
+    public Data(ResponseStore responses, WorkerRates rates) {
         this.requestIds = new ConcurrentLinkedQueue<>();
-        this.responses = new ConcurrentHashMap<>();
+        this.requestIdCount = new AtomicInteger(0);
+        this.responses = responses;
         this.workers = new ConcurrentHashMap<>();
+        this.workersVersion = new AtomicLong(0);
+        this.latency = new CloudLatency();
+        this.rates = rates;
     }
 
     public Queue<String> getRequestIds() {
         return requestIds;
     }
 
+    /**
+     * Records a request ID, dropping the oldest ones so that no more
+     * IDs are kept than the response store can hold responses for.
+     */
+    public void addRequestId(String requestId) {
+        requestIds.add(requestId);
+
+        if (requestIdCount.incrementAndGet() > responses.getCapacity()
+            && requestIds.poll() != null) {
+            requestIdCount.decrementAndGet();
+        }
+    }
+
     public Map<String, Response> getResponses() {
+        return responses.snapshot();
+    }
+
+    @JsonIgnore
+    public ResponseStore getResponseStore() {
         return responses;
     }
 
@@ -45,6 +83,57 @@ public class Data {
         return workers;
     }
 
+    @JsonIgnore
+    public WorkerRates getWorkerRates() {
+        return rates;
+    }
+
+    /**
+     * Request latency by cloud and then by stage.
+     */
+    public Map<String, Map<String, CloudLatency.Summary>> getLatency() {
+        return latency.summarize();
+    }
+
+    public void recordLatency(String cloud, ResponseTiming timing) {
+        latency.record(cloud, timing);
+    }
+
+    public void putWorker(WorkerUpdate update) {
+        workers.put(update.getWorkerId(), update);
+        rates.record(update);
+        workersVersion.incrementAndGet();
+    }
+
+    public void removeWorker(String workerId) {
+        rates.remove(workerId);
+
+        if (workers.remove(workerId) != null) {
+            workersVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * A counter that changes whenever a worker is added, updated or
+     * removed.
+     */
+    @JsonIgnore
+    public long getWorkersVersion() {
+        return workersVersion.get();
+    }
+
+    /**
+     * Collects the responses that arrived after the given sequence
+     * number, at most limit of them.
+     */
+    public DataUpdate getUpdate(long since, int limit) {
+        List<Response> result = new ArrayList<>();
+        long sequence = responses.since(since, limit, result);
+        boolean more = sequence < responses.getSequence();
+
+        return new DataUpdate(sequence, more, result, workers, latency.summarize());
+    }
+
     @Override
     public String toString() {
         return String.format("Data{requestIds=%s, responses=%s, workers=%s}",
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The responses that arrived after a given sequence number, along
+ * with the current set of workers.
+ */
+public class DataUpdate {
+    private final long sequence;
+    private final boolean more;
+    private final List<Response> responses;
+    private final Map<String, WorkerUpdate> workers;
+    private final Map<String, Map<String, CloudLatency.Summary>> latency;
+
+    public DataUpdate(long sequence, boolean more, List<Response> responses,
+                      Map<String, WorkerUpdate> workers,
+                      Map<String, Map<String, CloudLatency.Summary>> latency) {
+        this.sequence = sequence;
+        this.more = more;
+        this.responses = responses;
+        this.workers = workers;
+        this.latency = latency;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isMore() {
+        return more;
+    }
+
+    public List<Response> getResponses() {
+        return responses;
+    }
+
+    public Map<String, WorkerUpdate> getWorkers() {
+        return workers;
+    }
+
+    public Map<String, Map<String, CloudLatency.Summary>> getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DataUpdate{sequence=%s, more=%s, responses=%s, workers=%s}",
+                             sequence, more, responses, workers);
+    }
+}
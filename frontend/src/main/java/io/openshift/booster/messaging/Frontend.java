@@ -18,8 +18,13 @@
 package io.openshift.booster.messaging;
 
 import io.reactivex.Completable;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.proton.ProtonClient;
@@ -29,70 +34,216 @@ import io.vertx.proton.ProtonSender;
 import io.vertx.reactivex.CompletableHelper;
 import io.vertx.reactivex.config.ConfigRetriever;
 import io.vertx.reactivex.core.AbstractVerticle;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.core.http.HttpServerRequest;
 import io.vertx.reactivex.core.impl.AsyncResultCompletable;
+import io.vertx.reactivex.core.parsetools.RecordParser;
+import io.vertx.reactivex.core.shareddata.LocalMap;
 import io.vertx.reactivex.ext.web.Router;
 import io.vertx.reactivex.ext.web.RoutingContext;
 import io.vertx.reactivex.ext.web.handler.BodyHandler;
 import io.vertx.reactivex.ext.web.handler.StaticHandler;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedLong;
 import org.apache.qpid.proton.amqp.messaging.AmqpValue;
-import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
 import org.apache.qpid.proton.amqp.messaging.Source;
 import org.apache.qpid.proton.message.Message;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Frontend extends AbstractVerticle {
   private static final Logger LOGGER = LoggerFactory.getLogger(Frontend.class);
   private static final String ID = "frontend-vertx-" + UUID.randomUUID()
     .toString().substring(0, 4);
+  private static final String RESPONSES_ADDRESS = "frontend.responses";
+  private static final AtomicInteger instanceCount = new AtomicInteger(0);
+  private static final String REQUEST_ID_PREFIX = ID + "/";
+  private static final AtomicLong requestSequence = new AtomicLong(0);
+  // Long-polls parked on any instance, so that responses are only
+  // announced on the event bus when someone may be waiting for them
+  private static final AtomicInteger parkedWaiters = new AtomicInteger(0);
 
+  // Each instance has its own connection, so its own container ID
+  private final String containerId = ID + "-" + instanceCount.incrementAndGet();
+
+  private ProtonClient client;
+  private String amqpHost;
+  private int amqpPort;
+  private String amqpUser;
+  private String amqpPassword;
+
+  private ProtonConnection connection;
   private ProtonSender requestSender;
   private ProtonReceiver responseReceiver;
 
-  private final AtomicInteger requestSequence = new AtomicInteger(0);
-  private final Queue<Message> requestMessages = new ConcurrentLinkedQueue<>();
-  private final Data data = new Data();
+  private long reconnectDelay;
+  private long maxReconnectDelay;
+  private int reconnectAttempts;
+  private long disconnectedAt;
+  private long reconnects;
+  private long lastReconnectTime;
+  private long resentRequests;
+
+  // Requests sent but not yet answered, so they can be sent again if
+  // the connection drops
+  private InFlightRequests inFlight;
+  private long inFlightTtl;
+
+  // Rolling per-cloud figures, and, when routing by cloud, a link to
+  // each cloud's own request address
+  private final CloudRouter cloudRouter = new CloudRouter();
+  private final Map<String, ProtonSender> cloudSenders = new HashMap<>();
+  private boolean cloudRouting;
+
+  // Copies of context-confined state, refreshed on the verticle's
+  // context for the gauges, which are read on the scrape's thread
+  private volatile long senderCredit;
+  private volatile long inFlightCount;
+  private volatile long waiterCount;
+
+  private final Metrics.Counter requestsAccepted = Metrics.registry()
+    .counter("frontend_requests_total", "Requests accepted for sending");
+  private final Metrics.Counter requestsRefused = Metrics.registry()
+    .counter("frontend_requests_refused_total", "HTTP requests refused while shedding load");
+  private final Metrics.Counter responsesReceived = Metrics.registry()
+    .counter("frontend_responses_total", "Responses received from workers");
+  private final Metrics.Histogram requestLatency = Metrics.registry()
+    .histogram("frontend_request_latency_seconds", "Time from accepting a request to receiving its response");
+
+  private RequestQueue requestMessages;
+
+  // Proton encodes a message as soon as it is sent, so a single
+  // message is refilled and reused for every outgoing request
+  private final Message requestMessage = Message.Factory.create();
+  private final Map<Symbol, Object> requestTimestamps = new HashMap<>(4);
+  private final MessageAnnotations requestAnnotations = new MessageAnnotations(requestTimestamps);
+  private long retryAfter;
+  private final List<HttpServerRequest> pausedStreams = new ArrayList<>();
+  private int maxStreamRecord;
+  private Data data;
+  private DashboardStream stream;
+  private ResponseWaiters waiters;
+  private ResponseWaiters pendingRequests;
+  private long maxResponseWait;
+  private long requestTimeout;
 
   @Override
   public void start(Future<Void> future) {
     Router router = Router.router(vertx);
+    // Registered ahead of the body handler so the body is parsed as
+    // it streams in instead of being buffered
+    router.post("/api/stream-requests").handler(this::handleStreamRequests);
     router.route().handler(BodyHandler.create());
     router.post("/api/send-request").handler(this::handleSendRequest);
+    router.post("/api/send-requests").handler(this::handleSendRequests);
+    router.post("/api/request").handler(this::handleRequest);
     router.get("/api/receive-response").handler(this::handleReceiveResponse);
     router.get("/api/data").handler(this::handleGetData);
+    router.get("/api/events").handler(rc -> stream.handle(rc));
+    router.get("/api/stats").handler(this::handleGetStats);
+    router.get("/api/rates").handler(this::handleGetRates);
+    router.get("/metrics").handler(this::handleGetMetrics);
     router.get("/health").handler(rc -> rc.response().end("OK"));
     router.get("/*").handler(StaticHandler.create());
 
     ConfigRetriever.create(vertx).rxGetConfig()
       .flatMapCompletable(json -> {
-        String amqpHost = json.getString("MESSAGING_SERVICE_HOST", "localhost");
-        int amqpPort = json.getInteger("MESSAGING_SERVICE_PORT", 5672);
-        //String amqpUser = json.getString("MESSAGING_SERVICE_USER", "work-queue");
-        String amqpUser = json.getString("MESSAGING_SERVICE_USER", "");
-        // String amqpPassword = json.getString("MESSAGING_SERVICE_PASSWORD", "work-queue");
-        String amqpPassword = json.getString("MESSAGING_SERVICE_PASSWORD", "");
+        amqpHost = json.getString("MESSAGING_SERVICE_HOST", "localhost");
+        amqpPort = json.getInteger("MESSAGING_SERVICE_PORT", 5672);
+        //amqpUser = json.getString("MESSAGING_SERVICE_USER", "work-queue");
+        amqpUser = json.getString("MESSAGING_SERVICE_USER", "");
+        // amqpPassword = json.getString("MESSAGING_SERVICE_PASSWORD", "work-queue");
+        amqpPassword = json.getString("MESSAGING_SERVICE_PASSWORD", "");
 
         String httpHost = json.getString("HTTP_HOST", "0.0.0.0");
         int httpPort = json.getInteger("HTTP_PORT", 8080);
 
+        int responseCapacity = json.getInteger("RESPONSE_STORE_CAPACITY", 10000);
+        long responseTtl = json.getLong("RESPONSE_STORE_TTL", 10 * 60 * 1000L);
+
+        long streamInterval = json.getLong("DASHBOARD_STREAM_INTERVAL", 250L);
+
+        int maxWaiters = json.getInteger("RESPONSE_WAITERS_MAX", 10000);
+        maxResponseWait = json.getLong("RESPONSE_WAIT_MAX", 60 * 1000L);
+
+        // The first instance to start creates the data shared by all
+        // of them and takes care of pruning it
+        LocalMap<String, Data> shared = vertx.sharedData().getLocalMap("frontend");
+        // "ring" looks responses up by request sequence number, "lru"
+        // by request ID string with least recently used eviction
+        ResponseStore store = "lru".equals(json.getString("RESPONSE_STORE_TYPE", "ring"))
+          ? new LruResponseStore(responseCapacity, responseTtl)
+          : new RingResponseStore(REQUEST_ID_PREFIX, responseCapacity, responseTtl);
+        WorkerRates rates = new WorkerRates(json.getInteger("WORKER_RATE_UPDATES", 12),
+          json.getInteger("WORKER_RATE_HISTORY", 120), 10 * 1000);
+        Data created = new Data(store, rates);
+        Data existing = shared.putIfAbsent("data", created);
+        boolean owner = existing == null;
+
+        data = owner ? created : existing;
+        stream = new DashboardStream(vertx, data, streamInterval, 100);
+        waiters = new ResponseWaiters(vertx, maxWaiters, parkedWaiters);
+
+        int maxInFlight = json.getInteger("REQUEST_MAX_IN_FLIGHT", 1000);
+        requestTimeout = json.getLong("REQUEST_TIMEOUT", 30 * 1000L);
+
+        pendingRequests = new ResponseWaiters(vertx, maxInFlight);
+
+        if (context.getInstanceCount() > 1) {
+          vertx.eventBus().<String>consumer(RESPONSES_ADDRESS, message -> {
+            Response response = data.getResponseStore().get(message.body());
+
+            if (response != null) {
+              waiters.complete(response);
+            }
+          });
+        }
+
+        int highWatermark = json.getInteger("REQUEST_QUEUE_HIGH_WATERMARK", 10000);
+        int lowWatermark = json.getInteger("REQUEST_QUEUE_LOW_WATERMARK", highWatermark * 8 / 10);
+        String policy = json.getString("REQUEST_QUEUE_POLICY", "reject");
+        retryAfter = json.getLong("REQUEST_QUEUE_RETRY_AFTER", 1L);
+        maxStreamRecord = json.getInteger("STREAM_REQUEST_MAX_RECORD", 64 * 1024);
+
+        requestMessages = new RequestQueue(highWatermark, lowWatermark, RequestQueue.Policy.parse(policy));
+
+        // "shared" sends everything to work-requests.  "cloud" prefers
+        // work-requests.<cloud>, for clouds with workers that have
+        // WORKER_CLOUD_QUEUE_ENABLED set, and spills over to
+        // work-requests when that has no credit.
+        cloudRouting = "cloud".equals(json.getString("REQUEST_ROUTING", "shared"));
+
+        reconnectDelay = json.getLong("RECONNECT_DELAY", 100L);
+        maxReconnectDelay = json.getLong("RECONNECT_DELAY_MAX", 10 * 1000L);
+
+        int maxReplay = json.getInteger("REQUEST_REPLAY_MAX", 10000);
+        inFlightTtl = json.getLong("REQUEST_REPLAY_TTL", 60 * 1000L);
+
+        inFlight = new InFlightRequests(maxReplay);
+
+        registerGauges(owner);
+
         // AMQP
-        ProtonClient client = ProtonClient.create(vertx.getDelegate());
+        client = ProtonClient.create(vertx.getDelegate());
         Future<Void> connected = Future.future();
-        client.connect(amqpHost, amqpPort, amqpUser, amqpPassword, result -> {
+        connect(result -> {
           if (result.failed()) {
             LOGGER.error("MESSAGING_SERVICE_HOST " + amqpHost);
             LOGGER.error("MESSAGING_SERVICE_PORT " + amqpPort);
             connected.fail(result.cause());
           } else {
-            ProtonConnection conn = result.result();
-            conn.setContainer(ID);
-            conn.open();
+            if (owner) {
+              pruneStaleWorkers();
+              sampleWorkerRates();
+              expireResponses();
+            }
+
+            pruneInFlight();
+            updateRouting();
 
-            sendRequests(conn);
-            receiveWorkerUpdates(conn);
-            pruneStaleWorkers();
             connected.complete();
           }
         });
@@ -108,6 +259,72 @@ public class Frontend extends AbstractVerticle {
       .subscribe(CompletableHelper.toObserver(future));
   }
 
+  private void connect(Handler<AsyncResult<Void>> handler) {
+    client.connect(amqpHost, amqpPort, amqpUser, amqpPassword, result -> {
+      if (result.failed()) {
+        handler.handle(Future.failedFuture(result.cause()));
+        return;
+      }
+
+      ProtonConnection conn = result.result();
+      conn.setContainer(containerId);
+      conn.disconnectHandler(this::connectionLost);
+      // Dropping the socket of a connection the peer closed ends
+      // up in the disconnect handler too
+      conn.closeHandler(closed -> conn.disconnect());
+      conn.open();
+
+      connection = conn;
+
+      sendRequests(conn);
+      receiveWorkerUpdates(conn);
+
+      handler.handle(Future.succeededFuture());
+    });
+  }
+
+  private void connectionLost(ProtonConnection conn) {
+    if (conn != connection) {
+      return;
+    }
+
+    connection = null;
+    requestSender = null;
+    responseReceiver = null;
+    cloudSenders.clear();
+
+    // The reply address of the old connection is gone, so anything
+    // still unanswered is sent again once the links are back.  A
+    // worker may then process a request twice, but the second
+    // response just replaces the first in the store.
+    List<PendingRequest> unanswered = inFlight.drain();
+
+    requestMessages.requeue(unanswered);
+    resentRequests += unanswered.size();
+
+    disconnectedAt = System.currentTimeMillis();
+    reconnectAttempts = 0;
+
+    LOGGER.warn("{0}: Connection lost, {1} unanswered requests queued again", containerId,
+      unanswered.size());
+
+    reconnect();
+  }
+
+  private void reconnect() {
+    long delay = Math.min(reconnectDelay << Math.min(reconnectAttempts, 20), maxReconnectDelay);
+
+    reconnectAttempts++;
+
+    vertx.setTimer(delay, timer -> connect(result -> {
+      if (result.failed()) {
+        LOGGER.warn("{0}: Reconnect attempt {1} failed: {2}", containerId, reconnectAttempts,
+          result.cause().getMessage());
+        reconnect();
+      }
+    }));
+  }
+
   private void sendRequests(ProtonConnection conn) {
     requestSender = conn.createSender("work-requests");
 
@@ -117,15 +334,59 @@ public class Frontend extends AbstractVerticle {
     Source source = (Source) responseReceiver.getSource();
     source.setDynamic(true);
 
-    responseReceiver.openHandler(result -> requestSender.sendQueueDrainHandler(s -> doSendRequests()));
+    responseReceiver.openHandler(result -> {
+      if (disconnectedAt != 0) {
+        lastReconnectTime = System.currentTimeMillis() - disconnectedAt;
+        disconnectedAt = 0;
+        reconnects++;
+
+        LOGGER.info("{0}: Reconnected after {1} ms", containerId, lastReconnectTime);
+      }
+
+      requestSender.sendQueueDrainHandler(s -> {
+        doSendRequests();
+        resumeStreams();
+      });
+    });
 
     responseReceiver.handler((delivery, message) -> {
       Map props = message.getApplicationProperties().getValue();
       String workerId = (String) props.get("workerId");
       String cloudId = (String) props.get("AMQ_LOCATION_KEY");
-      String requestId = (String) message.getCorrelationId();
+      Object correlationId = message.getCorrelationId();
       String text = (String) ((AmqpValue) message.getBody()).getValue();
 
+      // Requests are sent with their sequence number as the message
+      // ID, and the string ID is only rebuilt if the request is no
+      // longer tracked
+      PendingRequest request = null;
+      long sequence = -1;
+      String requestId;
+
+      if (correlationId instanceof UnsignedLong) {
+        sequence = ((UnsignedLong) correlationId).longValue();
+
+        request = inFlight.remove(sequence);
+        requestId = request != null
+          ? request.getRequestId()
+          : RequestIds.format(REQUEST_ID_PREFIX, sequence);
+      } else {
+        requestId = String.valueOf(correlationId);
+
+        LOGGER.warn("{0}: Response correlation ID {1} is not a request sequence number",
+          containerId, requestId);
+      }
+
+      if (request != null) {
+        requestLatency.record(System.nanoTime() - request.getEnqueueNanos());
+
+        if (cloudId != null) {
+          cloudRouter.responded(cloudId, System.currentTimeMillis() - request.getSendTime());
+        }
+      }
+
+      responsesReceived.increment();
+
       /*
           trim down to the relevant substring      
       */
@@ -133,11 +394,26 @@ public class Frontend extends AbstractVerticle {
       int lastIndex = workerId.lastIndexOf("-");
       String uniquePart = workerId.substring(lastIndex + 1);
       // LOGGER.info("ONPREM: " + uniquePart);
-      Response response = new Response(requestId, uniquePart, cloudId, text);
+      MessageAnnotations annotations = message.getMessageAnnotations();
+      ResponseTiming timing = annotations == null ? null
+        : ResponseTiming.fromAnnotations(annotations.getValue(), System.currentTimeMillis());
+      Response response = new Response(requestId, uniquePart, cloudId, text, timing);
+
+      if (timing != null && cloudId != null) {
+        data.recordLatency(cloudId, timing);
+      }
 
-      data.getResponses().put(response.getRequestId(), response);
+      data.getResponseStore().put(sequence, response);
+      waiters.complete(response);
+      pendingRequests.complete(response);
 
-      LOGGER.info("{0}: Received {1}", ID, response);
+      // The long-poll for this response may be parked on another
+      // instance
+      if (context.getInstanceCount() > 1 && parkedWaiters.get() > 0) {
+        vertx.eventBus().publish(RESPONSES_ADDRESS, response.getRequestId());
+      }
+
+      LOGGER.info("{0}: Received {1}", containerId, response);
     });
 
     requestSender.open();
@@ -145,7 +421,7 @@ public class Frontend extends AbstractVerticle {
   }
 
   private void doSendRequests() {
-    if (responseReceiver == null) {
+    if (responseReceiver == null || responseReceiver.getRemoteSource() == null) {
       return;
     }
 
@@ -153,21 +429,72 @@ public class Frontend extends AbstractVerticle {
       return;
     }
 
-    while (!requestSender.sendQueueFull()) {
-      Message message = requestMessages.poll();
+    String replyTo = responseReceiver.getRemoteSource().getAddress();
+
+    while (true) {
+      String cloud = cloudRouting ? cloudRouter.choose() : null;
+      ProtonSender sender = cloud == null ? requestSender : cloudSender(cloud);
+      boolean spilled = false;
+
+      if (sender.sendQueueFull() && sender != requestSender) {
+        sender = requestSender;
+        spilled = true;
+      }
+
+      if (sender.sendQueueFull()) {
+        break;
+      }
+
+      PendingRequest request = requestMessages.poll();
 
-      if (message == null) {
+      if (request == null) {
         break;
       }
 
-      message.setReplyTo(responseReceiver.getRemoteSource().getAddress());
+      if (spilled) {
+        cloudRouter.spilled(cloud);
+      } else if (cloud != null) {
+        cloudRouter.sent(cloud);
+      }
+
+      Message message = requestMessage;
+      message.setMessageId(UnsignedLong.valueOf(request.getSequence()));
+      message.setAddress(sender == requestSender ? "work-requests" : "work-requests." + cloud);
+      message.setReplyTo(replyTo);
+      message.setBody(new AmqpValue(request.getText()));
+      message.setApplicationProperties(request.getProperties());
+
+      long now = System.currentTimeMillis();
+      requestTimestamps.put(TimingAnnotations.ENQUEUE_TIME, request.getEnqueueTime());
+      requestTimestamps.put(TimingAnnotations.SEND_TIME, now);
+      message.setMessageAnnotations(requestAnnotations);
+
+      sender.send(message);
 
-      requestSender.send(message);
+      request.setSendTime(now);
+      inFlight.put(request);
 
-      LOGGER.info("{0}: Sent {1}", ID, message);
+      LOGGER.info("{0}: Sent {1}", containerId, message);
     }
   }
 
+  private ProtonSender cloudSender(String cloud) {
+    ProtonSender sender = cloudSenders.get(cloud);
+
+    if (sender == null) {
+      sender = connection.createSender("work-requests." + cloud);
+      sender.sendQueueDrainHandler(s -> {
+        doSendRequests();
+        resumeStreams();
+      });
+      sender.open();
+
+      cloudSenders.put(cloud, sender);
+    }
+
+    return sender;
+  }
+
   private void receiveWorkerUpdates(ProtonConnection conn) {
     ProtonReceiver receiver = conn.createReceiver("worker-updates");
 
@@ -178,37 +505,280 @@ public class Frontend extends AbstractVerticle {
       long timestamp = (long) props.get("timestamp");
       long requestsProcessed = (long) props.get("requestsProcessed");
       long processingErrors = (long) props.get("processingErrors");
+      // Absent from workers that predate routing by cloud
+      boolean cloudQueue = Boolean.TRUE.equals(props.get("cloudQueue"));
 
       WorkerUpdate update = new WorkerUpdate(workerId, cloud, timestamp, requestsProcessed,
-        processingErrors);
+        processingErrors, cloudQueue);
 
-      data.getWorkers().put(update.getWorkerId(), update);
+      data.putWorker(update);
     });
 
     receiver.open();
   }
 
   private void handleSendRequest(RoutingContext rc) {
-    String json = rc.getBodyAsString();
-    String requestId = ID + "/" + requestSequence.incrementAndGet();
-    Request request = Json.decodeValue(json, Request.class);
-    Map<String, Object> props = new HashMap<>();
-    props.put("uppercase", request.isUppercase());
-    props.put("reverse", request.isReverse());
-    
-    Message message = Message.Factory.create();
-    message.setMessageId(requestId);
-    message.setAddress("work-requests");
-    message.setBody(new AmqpValue(request.getText()));
-    message.setApplicationProperties(new ApplicationProperties(props));
-
-    requestMessages.add(message);
-
-    data.getRequestIds().add(requestId);
+    Request request;
+
+    try {
+      request = decodeRequest(rc.getBodyAsString());
+    } catch (DecodeException e) {
+      badRequest(rc, e);
+      return;
+    }
+
+    PendingRequest pending = newRequest(request);
+
+    if (!enqueueRequest(pending)) {
+      tooManyRequests(rc);
+      return;
+    }
 
     doSendRequests();
 
-    rc.response().setStatusCode(202).end(requestId);
+    rc.response().setStatusCode(202).end(pending.getRequestId());
+  }
+
+  private void handleSendRequests(RoutingContext rc) {
+    String body = rc.getBodyAsString();
+    String contentType = rc.request().getHeader("Content-Type");
+    List<Request> requests = new ArrayList<>();
+
+    try {
+      if (body == null) {
+        throw new DecodeException("Missing request body");
+      }
+
+      if (contentType != null && contentType.startsWith("application/x-ndjson")) {
+        for (String line : body.split("\n")) {
+          if (!line.trim().isEmpty()) {
+            requests.add(decodeRequest(line));
+          }
+        }
+      } else {
+        Request[] array = Json.decodeValue(body, Request[].class);
+
+        if (array == null) {
+          throw new DecodeException("Expected an array of requests");
+        }
+
+        for (Request request : array) {
+          requests.add(validateRequest(request));
+        }
+      }
+    } catch (DecodeException e) {
+      badRequest(rc, e);
+      return;
+    }
+
+    // Retrying cannot help a batch bigger than the whole queue
+    if (!requestMessages.canEverAccept(requests.size())) {
+      rc.response().setStatusCode(413)
+        .end("Batch of " + requests.size() + " requests exceeds the queue's high watermark of "
+             + requestMessages.getHighWatermark());
+      return;
+    }
+
+    if (!requestMessages.canAccept(requests.size())) {
+      tooManyRequests(rc);
+      return;
+    }
+
+    List<String> requestIds = new ArrayList<>(requests.size());
+
+    for (Request request : requests) {
+      PendingRequest pending = newRequest(request);
+
+      if (enqueueRequest(pending)) {
+        requestIds.add(pending.getRequestId());
+      }
+    }
+
+    doSendRequests();
+
+    rc.response()
+      .setStatusCode(202)
+      .putHeader("Content-Type", "application/json; charset=utf-8")
+      .end(Json.encode(requestIds));
+  }
+
+  private void handleStreamRequests(RoutingContext rc) {
+    HttpServerRequest request = rc.request();
+    JsonArray requestIds = new JsonArray();
+    boolean[] failed = {false};
+
+    RecordParser parser = RecordParser.newDelimited("\n", line -> {
+      if (failed[0] || line.length() == 0) {
+        return;
+      }
+
+      Request req;
+
+      try {
+        req = validateRequest(Json.decodeValue(line.getDelegate(), Request.class));
+      } catch (DecodeException e) {
+        failed[0] = true;
+        badRequest(rc, e);
+        return;
+      }
+
+      PendingRequest pending = newRequest(req);
+
+      if (!enqueueRequest(pending)) {
+        failed[0] = true;
+        tooManyRequests(rc);
+        return;
+      }
+
+      requestIds.add(pending.getRequestId());
+
+      doSendRequests();
+
+      // Anything left in the queue means the sender is out of credit
+      if (!requestMessages.isEmpty() && !pausedStreams.contains(request)) {
+        request.pause();
+        pausedStreams.add(request);
+      }
+    });
+
+    // The parser buffers a partial record without limit, so count the
+    // bytes since the last delimiter and give up on an oversized one
+    int[] recordLength = {0};
+
+    request.handler(buffer -> {
+      if (failed[0]) {
+        return;
+      }
+
+      int length = recordLength[0];
+
+      for (int i = 0; i < buffer.length(); i++) {
+        if (buffer.getByte(i) == '\n') {
+          length = 0;
+        } else if (++length > maxStreamRecord) {
+          failed[0] = true;
+          pausedStreams.remove(request);
+          rc.response().setStatusCode(413).end("Request exceeds " + maxStreamRecord + " bytes");
+          return;
+        }
+      }
+
+      recordLength[0] = length;
+      parser.handle(buffer);
+    });
+    request.exceptionHandler(t -> pausedStreams.remove(request));
+    rc.response().closeHandler(v -> pausedStreams.remove(request));
+    request.endHandler(v -> {
+      // Flush a final line that has no trailing newline
+      parser.handle(Buffer.buffer("\n"));
+      pausedStreams.remove(request);
+
+      if (!failed[0]) {
+        rc.response()
+          .setStatusCode(202)
+          .putHeader("Content-Type", "application/json; charset=utf-8")
+          .end(requestIds.encode());
+      }
+    });
+  }
+
+  private void resumeStreams() {
+    if (pausedStreams.isEmpty() || !requestMessages.isEmpty()) {
+      return;
+    }
+
+    List<HttpServerRequest> streams = new ArrayList<>(pausedStreams);
+
+    pausedStreams.clear();
+
+    for (HttpServerRequest request : streams) {
+      request.resume();
+    }
+  }
+
+  private void handleRequest(RoutingContext rc) {
+    Request request;
+
+    try {
+      request = decodeRequest(rc.getBodyAsString());
+    } catch (DecodeException e) {
+      badRequest(rc, e);
+      return;
+    }
+
+    PendingRequest pending = newRequest(request);
+
+    ResponseWaiters.Waiter waiter = pendingRequests.await(pending.getRequestId(), requestTimeout, response -> {
+      if (response == null) {
+        rc.response().setStatusCode(504).end();
+      } else {
+        respond(rc, response);
+      }
+    });
+
+    if (waiter == null) {
+      rc.response().setStatusCode(503).putHeader("Retry-After", "1").end();
+      return;
+    }
+
+    if (!enqueueRequest(pending)) {
+      pendingRequests.cancel(waiter);
+      tooManyRequests(rc);
+      return;
+    }
+
+    rc.response().closeHandler(v -> pendingRequests.cancel(waiter));
+
+    doSendRequests();
+  }
+
+  private static Request decodeRequest(String json) {
+    if (json == null) {
+      throw new DecodeException("Missing request body");
+    }
+
+    return validateRequest(Json.decodeValue(json, Request.class));
+  }
+
+  private static Request validateRequest(Request request) {
+    if (request == null || request.getText() == null) {
+      throw new DecodeException("Missing request text");
+    }
+
+    return request;
+  }
+
+  private void badRequest(RoutingContext rc, DecodeException e) {
+    rc.response().setStatusCode(400).end(e.getMessage());
+  }
+
+  private PendingRequest newRequest(Request request) {
+    long sequence = requestSequence.incrementAndGet();
+
+    return new PendingRequest(sequence, RequestIds.format(REQUEST_ID_PREFIX, sequence), request);
+  }
+
+  /**
+   * Queues the request for sending.  Returns false if the queue is
+   * shedding load and refused it.
+   */
+  private boolean enqueueRequest(PendingRequest request) {
+    if (!requestMessages.offer(request)) {
+      return false;
+    }
+
+    data.addRequestId(request.getRequestId());
+    requestsAccepted.increment();
+    return true;
+  }
+
+  private void tooManyRequests(RoutingContext rc) {
+    requestsRefused.increment();
+
+    rc.response()
+      .setStatusCode(429)
+      .putHeader("Retry-After", String.valueOf(retryAfter))
+      .end();
   }
 
   private void handleReceiveResponse(RoutingContext rc) {
@@ -219,23 +789,195 @@ public class Frontend extends AbstractVerticle {
       return;
     }
 
-    Response response = data.getResponses().get(value);
+    Response response = data.getResponseStore().get(value);
+
+    if (response != null) {
+      respond(rc, response);
+      return;
+    }
 
-    if (response == null) {
+    String wait = rc.request().getParam("wait");
+
+    if (wait == null) {
       rc.response().setStatusCode(404).end();
       return;
     }
 
+    long timeout;
+
+    try {
+      timeout = Math.min(Long.parseLong(wait), maxResponseWait);
+    } catch (NumberFormatException e) {
+      rc.response().setStatusCode(400).end();
+      return;
+    }
+
+    if (timeout <= 0) {
+      rc.response().setStatusCode(404).end();
+      return;
+    }
+
+    ResponseWaiters.Waiter waiter = waiters.await(value, timeout, r -> {
+      if (r == null) {
+        rc.response().setStatusCode(404).end();
+      } else {
+        respond(rc, r);
+      }
+    });
+
+    if (waiter == null) {
+      rc.response().setStatusCode(503).putHeader("Retry-After", "1").end();
+      return;
+    }
+
+    rc.response().closeHandler(v -> waiters.cancel(waiter));
+
+    // The response may have been stored by another instance after the
+    // lookup above but before the waiter was counted, in which case it
+    // was not announced
+    Response stored = data.getResponseStore().get(value);
+
+    if (stored != null) {
+      waiters.complete(stored);
+    }
+  }
+
+  private void respond(RoutingContext rc, Response response) {
     rc.response()
       .setStatusCode(200)
       .putHeader("Content-Type", "application/json; charset=utf-8")
       .end(Json.encodePrettily(response));
   }
 
+  private void handleGetStats(RoutingContext rc) {
+    ResponseStore store = data.getResponseStore();
+
+    JsonObject queue = new JsonObject()
+      .put("depth", requestMessages.size())
+      .put("maxDepth", requestMessages.getMaxDepth())
+      .put("highWatermark", requestMessages.getHighWatermark())
+      .put("lowWatermark", requestMessages.getLowWatermark())
+      .put("policy", requestMessages.getPolicy().name())
+      .put("shedding", requestMessages.isShedding())
+      .put("rejected", requestMessages.getRejected())
+      .put("dropped", requestMessages.getDropped());
+
+    JsonObject responses = new JsonObject()
+      .put("size", store.size())
+      .put("capacity", store.getCapacity())
+      .put("evictions", store.getEvictions())
+      .put("expirations", store.getExpirations())
+      .put("waiters", waiters.size())
+      .put("pendingRequests", pendingRequests.size());
+
+    JsonObject conn = new JsonObject()
+      .put("connected", connection != null)
+      .put("reconnects", reconnects)
+      .put("lastReconnectTime", lastReconnectTime)
+      .put("inFlight", inFlight.size())
+      .put("inFlightDropped", inFlight.getDropped())
+      .put("resent", resentRequests);
+
+    JsonObject clouds = new JsonObject();
+
+    for (Map.Entry<String, CloudRouter.CloudStats> entry : cloudRouter.getClouds().entrySet()) {
+      CloudRouter.CloudStats stats = entry.getValue();
+
+      clouds.put(entry.getKey(), new JsonObject()
+        .put("workers", stats.getWorkers())
+        .put("latency", stats.getLatency())
+        .put("throughput", stats.getThroughput())
+        .put("weight", stats.getWeight())
+        .put("responses", stats.getResponses())
+        .put("sent", stats.getSent())
+        .put("spilled", stats.getSpilled()));
+    }
+
+    JsonObject routing = new JsonObject()
+      .put("mode", cloudRouting ? "cloud" : "shared")
+      .put("clouds", clouds);
+
+    rc.response()
+      .putHeader("Content-Type", "application/json; charset=utf-8")
+      .end(new JsonObject()
+        .put("requestQueue", queue)
+        .put("responses", responses)
+        .put("connection", conn)
+        .put("routing", routing)
+        .encode());
+  }
+
+  private void handleGetRates(RoutingContext rc) {
+    WorkerRates rates = data.getWorkerRates();
+    Map<String, Object> result = new LinkedHashMap<>();
+
+    result.put("workers", rates.getWorkers());
+    result.put("fleet", rates.getFleet());
+    result.put("clouds", rates.getClouds());
+
+    rc.response()
+      .putHeader("Content-Type", "application/json; charset=utf-8")
+      .end(Json.encode(result));
+  }
+
+  private void handleGetMetrics(RoutingContext rc) {
+    rc.response()
+      .putHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+      .end(Metrics.registry().scrape());
+  }
+
+  private void registerGauges(boolean owner) {
+    Metrics metrics = Metrics.registry();
+    String labels = "instance=\"" + containerId + "\"";
+
+    metrics.gauge("frontend_request_queue_depth", "Requests waiting for sender credit", labels,
+      () -> requestMessages.size());
+    metrics.gauge("frontend_sender_credit", "Credit granted to the request sender", labels,
+      () -> senderCredit);
+    metrics.gauge("frontend_in_flight_requests", "Requests sent and not yet answered", labels,
+      () -> inFlightCount);
+    metrics.gauge("frontend_response_waiters", "HTTP requests waiting for a response", labels,
+      () -> waiterCount);
+
+    if (owner) {
+      metrics.gauge("frontend_response_store_size", "Responses held in the response store", "",
+        () -> data.getResponseStore().size());
+    }
+
+    vertx.setPeriodic(1000, timer -> {
+      ProtonSender sender = requestSender;
+
+      senderCredit = sender == null ? 0 : sender.getCredit();
+      inFlightCount = inFlight.size();
+      waiterCount = waiters.size() + pendingRequests.size();
+    });
+  }
+
   private void handleGetData(RoutingContext rc) {
+    String since = rc.request().getParam("since");
+    String limit = rc.request().getParam("limit");
+    String json;
+
+    if (since == null) {
+      json = Json.encode(data);
+    } else {
+      int max = 100;
+
+      try {
+        if (limit != null) {
+          max = Math.max(1, Math.min(Integer.parseInt(limit), 1000));
+        }
+
+        json = Json.encode(data.getUpdate(Long.parseLong(since), max));
+      } catch (NumberFormatException e) {
+        rc.response().setStatusCode(400).end();
+        return;
+      }
+    }
+
     rc.response()
       .putHeader("Content-Type", "application/json; charset=utf-8")
-      .end(Json.encodePrettily(data));
+      .end(json);
   }
 
   private void pruneStaleWorkers() {
@@ -250,10 +992,47 @@ public class Frontend extends AbstractVerticle {
         WorkerUpdate update = entry.getValue();
 
         if (now - update.getTimestamp() > 10 * 1000) {
-          workers.remove(workerId);
+          data.removeWorker(workerId);
           LOGGER.info("{0}: Pruned {1}", ID, workerId);
         }
       }
     });
   }
+
+  private void updateRouting() {
+    vertx.setPeriodic(1000, timer -> {
+      Map<String, Integer> workers = new HashMap<>();
+
+      // Only workers listening on their cloud's address count, so
+      // that no requests go to an address nobody consumes
+      for (WorkerUpdate update : data.getWorkers().values()) {
+        if (update.getCloud() != null && update.isCloudQueue()) {
+          workers.merge(update.getCloud(), 1, Integer::sum);
+        }
+      }
+
+      cloudRouter.update(workers, 1000);
+    });
+  }
+
+  private void pruneInFlight() {
+    vertx.setPeriodic(5000, timer -> {
+      inFlight.expire(System.currentTimeMillis() - inFlightTtl);
+    });
+  }
+
+  private void sampleWorkerRates() {
+    vertx.setPeriodic(5000, timer -> data.getWorkerRates().sample(System.currentTimeMillis()));
+  }
+
+  private void expireResponses() {
+    vertx.setPeriodic(5000, timer -> {
+      ResponseStore store = data.getResponseStore();
+
+      store.expire(System.currentTimeMillis());
+
+      LOGGER.debug("{0}: Response store size={1}, evictions={2}, expirations={3}", ID,
+        store.size(), store.getEvictions(), store.getExpirations());
+    });
+  }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.reactivex.CompletableHelper;
+import io.vertx.reactivex.config.ConfigRetriever;
+import io.vertx.reactivex.core.AbstractVerticle;
+
+/**
+ * Deploys one Frontend verticle per event loop.  The instances share
+ * the HTTP port and the response data, but each has its own AMQP
+ * connection.
+ */
+public class FrontendDeployer extends AbstractVerticle {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FrontendDeployer.class);
+
+  @Override
+  public void start(Future<Void> future) {
+    ConfigRetriever.create(vertx).rxGetConfig()
+      .flatMapCompletable(json -> {
+        int instances = json.getInteger("FRONTEND_INSTANCES",
+          Runtime.getRuntime().availableProcessors());
+
+        LOGGER.info("Deploying {0} frontend instances", instances);
+
+        return vertx.rxDeployVerticle(Frontend.class.getName(),
+          new DeploymentOptions().setInstances(instances)).toCompletable();
+      })
+      .subscribe(CompletableHelper.toObserver(future));
+  }
+}
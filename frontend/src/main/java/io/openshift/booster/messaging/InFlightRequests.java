@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The requests sent and not yet answered, indexed by sequence number.
+ *
+ * Request n occupies slot n modulo the capacity, so adding and
+ * removing a request is an array write with no hashing or allocation.
+ * A request still unanswered when the request capacity places after
+ * it is sent is dropped.
+ *
+ * Instances are not thread safe and must only be used from the
+ * verticle's context.
+ */
+public class InFlightRequests {
+    private final PendingRequest[] slots;
+
+    private int size;
+    private long dropped;
+
+    public InFlightRequests(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        this.slots = new PendingRequest[capacity];
+    }
+
+    public void put(PendingRequest request) {
+        int index = index(request.getSequence());
+        PendingRequest previous = slots[index];
+
+        if (previous == null) {
+            size++;
+        } else if (previous.getSequence() != request.getSequence()) {
+            dropped++;
+        }
+
+        slots[index] = request;
+    }
+
+    /**
+     * Removes and returns the request with the given sequence number,
+     * or returns null if it is not in flight.
+     */
+    public PendingRequest remove(long sequence) {
+        int index = index(sequence);
+        PendingRequest request = slots[index];
+
+        if (request == null || request.getSequence() != sequence) {
+            return null;
+        }
+
+        slots[index] = null;
+        size--;
+
+        return request;
+    }
+
+    /**
+     * Drops the requests sent before the cutoff, in milliseconds since
+     * the epoch.
+     */
+    public void expire(long cutoff) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null && slots[i].getSendTime() < cutoff) {
+                slots[i] = null;
+                size--;
+                dropped++;
+            }
+        }
+    }
+
+    /**
+     * Removes every request and returns them in the order they were
+     * accepted.
+     */
+    public List<PendingRequest> drain() {
+        List<PendingRequest> result = new ArrayList<>(size);
+
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                result.add(slots[i]);
+                slots[i] = null;
+            }
+        }
+
+        result.sort(Comparator.comparingLong(PendingRequest::getSequence));
+        size = 0;
+
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of requests dropped before an answer arrived.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % slots.length);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A response store that evicts the least recently used entry once
+ * it reaches its capacity.
+ */
+public class LruResponseStore implements ResponseStore {
+    private final int capacity;
+    private final long ttl;
+    private final Map<String, StoredResponse> entries;
+    private final NavigableMap<Long, StoredResponse> journal;
+    // A private lock rather than the store's own monitor, since the
+    // store is shared between the verticle instances through Data
+    private final Object lock = new Object();
+
+    private long sequence;
+    private long evictions;
+    private long expirations;
+
+    public LruResponseStore(int capacity, long ttl) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, StoredResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                if (size() > LruResponseStore.this.capacity) {
+                    journal.remove(eldest.getValue().sequence);
+                    evictions++;
+                    return true;
+                }
+
+                return false;
+            }
+        };
+        this.journal = new TreeMap<>();
+    }
+
+    @Override
+    public void put(long requestSequence, Response response) {
+        synchronized (lock) {
+            StoredResponse entry = new StoredResponse(response, ++sequence, System.currentTimeMillis());
+            StoredResponse previous = entries.put(response.getRequestId(), entry);
+
+            if (previous != null) {
+                journal.remove(previous.sequence);
+            }
+
+            journal.put(entry.sequence, entry);
+        }
+    }
+
+    @Override
+    public Response get(String requestId) {
+        synchronized (lock) {
+            StoredResponse entry = entries.get(requestId);
+
+            if (entry == null) {
+                return null;
+            }
+
+            if (isExpired(entry, System.currentTimeMillis())) {
+                entries.remove(requestId);
+                journal.remove(entry.sequence);
+                expirations++;
+                return null;
+            }
+
+            return entry.response;
+        }
+    }
+
+    @Override
+    public void expire(long now) {
+        synchronized (lock) {
+            Iterator<StoredResponse> iter = entries.values().iterator();
+
+            while (iter.hasNext()) {
+                StoredResponse entry = iter.next();
+
+                if (isExpired(entry, now)) {
+                    iter.remove();
+                    journal.remove(entry.sequence);
+                    expirations++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public long since(long sequence, int limit, List<Response> result) {
+        synchronized (lock) {
+            Iterable<StoredResponse> selected;
+
+            if (sequence < 0) {
+                NavigableMap<Long, StoredResponse> tail = journal;
+
+                if (journal.size() > limit) {
+                    long first = journal.descendingKeySet().stream()
+                        .skip(limit - 1).findFirst().orElse(0L);
+                    tail = journal.tailMap(first, true);
+                }
+
+                selected = tail.values();
+            } else {
+                selected = journal.tailMap(sequence, false).values();
+            }
+
+            for (StoredResponse entry : selected) {
+                if (limit-- == 0) {
+                    return entry.sequence - 1;
+                }
+
+                result.add(entry.response);
+            }
+
+            // Everything after the cursor was either returned or has
+            // been evicted or expired, so the reader is up to date
+            return this.sequence;
+        }
+    }
+
+    @Override
+    public long getSequence() {
+        synchronized (lock) {
+            return sequence;
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getEvictions() {
+        synchronized (lock) {
+            return evictions;
+        }
+    }
+
+    @Override
+    public long getExpirations() {
+        synchronized (lock) {
+            return expirations;
+        }
+    }
+
+    @Override
+    public Map<String, Response> snapshot() {
+        synchronized (lock) {
+            Map<String, Response> copy = new LinkedHashMap<>();
+
+            for (Map.Entry<String, StoredResponse> entry : entries.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue().response);
+            }
+
+            return copy;
+        }
+    }
+
+    private boolean isExpired(StoredResponse entry, long now) {
+        return ttl > 0 && now - entry.created > ttl;
+    }
+
+    private static class StoredResponse {
+        private final Response response;
+        private final long sequence;
+        private final long created;
+
+        StoredResponse(Response response, long sequence, long created) {
+            this.response = response;
+            this.sequence = sequence;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A request waiting to be sent.  The AMQP message is only built when
+ * the request is sent, so queued requests stay small.
+ */
+public class PendingRequest {
+    // One shared, read-only properties section for each combination of
+    // request flags
+    private static final ApplicationProperties[] PROPERTIES = {
+        properties(false, false),
+        properties(true, false),
+        properties(false, true),
+        properties(true, true),
+    };
+
+    private final long sequence;
+    private final String requestId;
+    private final String text;
+    private final ApplicationProperties properties;
+    private final long enqueueNanos = System.nanoTime();
+    private final long enqueueTime = System.currentTimeMillis();
+
+    private long sendTime;
+
+    public PendingRequest(long sequence, String requestId, Request request) {
+        this.sequence = sequence;
+        this.requestId = requestId;
+        this.text = request.getText();
+        this.properties = PROPERTIES[(request.isUppercase() ? 1 : 0) | (request.isReverse() ? 2 : 0)];
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public ApplicationProperties getProperties() {
+        return properties;
+    }
+
+    /**
+     * When the request was accepted, as a System.nanoTime() value.
+     */
+    public long getEnqueueNanos() {
+        return enqueueNanos;
+    }
+
+    /**
+     * When the request was accepted, in milliseconds since the epoch.
+     */
+    public long getEnqueueTime() {
+        return enqueueTime;
+    }
+
+    /**
+     * When the request was last sent, in milliseconds since the epoch,
+     * or 0 if it has not been sent.
+     */
+    public long getSendTime() {
+        return sendTime;
+    }
+
+    public void setSendTime(long sendTime) {
+        this.sendTime = sendTime;
+    }
+
+    private static ApplicationProperties properties(boolean uppercase, boolean reverse) {
+        Map<String, Object> props = new HashMap<>();
+        props.put("uppercase", uppercase);
+        props.put("reverse", reverse);
+
+        return new ApplicationProperties(Collections.unmodifiableMap(props));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PendingRequest{requestId=%s, text=%s, properties=%s}",
+                             requestId, text, properties.getValue());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+/**
+ * Request IDs are a per-process prefix followed by a sequence number.
+ * Internally requests are identified by the number alone, and the
+ * string form is only used at the HTTP boundary.
+ */
+public final class RequestIds {
+    private RequestIds() {
+    }
+
+    public static String format(String prefix, long sequence) {
+        return prefix + sequence;
+    }
+
+    /**
+     * Returns the sequence number of a request ID with the given
+     * prefix, or -1 if the ID has a different prefix or is malformed.
+     * Does not allocate.
+     */
+    public static long parse(String requestId, String prefix) {
+        int length = requestId.length();
+        int start = prefix.length();
+
+        if (length == start || length - start > 18 || !requestId.startsWith(prefix)) {
+            return -1;
+        }
+
+        long sequence = 0;
+
+        for (int i = start; i < length; i++) {
+            char c = requestId.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            sequence = sequence * 10 + (c - '0');
+        }
+
+        return sequence;
+    }
+}
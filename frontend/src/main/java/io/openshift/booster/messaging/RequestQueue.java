@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The outbound buffer of requests waiting for sender credit.
+ *
+ * Once the queue reaches its high watermark it starts shedding load.
+ * With the reject policy, new requests are refused until the queue
+ * has drained to its low watermark.  With the drop-oldest policy, the
+ * oldest queued request is discarded to make room for each new one.
+ */
+public class RequestQueue {
+    public enum Policy {
+        REJECT,
+        DROP_OLDEST;
+
+        public static Policy parse(String value) {
+            return valueOf(value.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private final Deque<PendingRequest> requests = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger depth = new AtomicInteger(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final Policy policy;
+
+    private volatile boolean shedding;
+    private volatile int maxDepth;
+
+    public RequestQueue(int highWatermark, int lowWatermark, Policy policy) {
+        if (lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Low watermark " + lowWatermark
+                                               + " exceeds high watermark " + highWatermark);
+        }
+
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.policy = policy;
+    }
+
+    /**
+     * Returns true if count requests could ever be admitted together,
+     * even with the queue empty.
+     */
+    public boolean canEverAccept(int count) {
+        return policy == Policy.DROP_OLDEST || count <= highWatermark;
+    }
+
+    /**
+     * Returns true if count more requests would currently be
+     * admitted.
+     */
+    public boolean canAccept(int count) {
+        if (policy == Policy.DROP_OLDEST) {
+            return true;
+        }
+
+        return !shedding && depth.get() + count <= highWatermark;
+    }
+
+    /**
+     * Queues the request.  Returns false if it was rejected.
+     */
+    public boolean offer(PendingRequest request) {
+        if (depth.get() >= highWatermark) {
+            shedding = true;
+
+            if (policy == Policy.REJECT) {
+                rejected.incrementAndGet();
+                return false;
+            }
+
+            if (requests.poll() != null) {
+                depth.decrementAndGet();
+                dropped.incrementAndGet();
+            }
+        } else if (shedding && policy == Policy.REJECT) {
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        requests.add(request);
+        updateMaxDepth(depth.incrementAndGet());
+
+        return true;
+    }
+
+    /**
+     * Puts already admitted requests back at the head of the queue, in
+     * their original order, so they are sent again before anything
+     * new.  The watermarks do not apply.
+     */
+    public void requeue(List<PendingRequest> previous) {
+        for (int i = previous.size() - 1; i >= 0; i--) {
+            requests.addFirst(previous.get(i));
+        }
+
+        updateMaxDepth(depth.addAndGet(previous.size()));
+    }
+
+    public PendingRequest poll() {
+        PendingRequest request = requests.poll();
+
+        if (request != null && depth.decrementAndGet() <= lowWatermark) {
+            shedding = false;
+        }
+
+        return request;
+    }
+
+    private void updateMaxDepth(int current) {
+        if (current > maxDepth) {
+            maxDepth = current;
+        }
+    }
+
+    public boolean isEmpty() {
+        return requests.isEmpty();
+    }
+
+    public int size() {
+        return depth.get();
+    }
+
+    public int getHighWatermark() {
+        return highWatermark;
+    }
+
+    public int getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public boolean isShedding() {
+        return shedding;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -21,12 +21,15 @@ public class Response {
     private final String workerId;
     private final String cloudId;
     private final String text;
+    private final ResponseTiming timing;
 
-    public Response(String requestId, String workerId, String cloudId, String text) {
+    public Response(String requestId, String workerId, String cloudId, String text,
+                    ResponseTiming timing) {
         this.requestId = requestId;
         this.workerId = workerId;
         this.cloudId = cloudId;
         this.text = text;
+        this.timing = timing;
     }
 
     public String getRequestId() {
@@ -45,9 +48,17 @@ public class Response {
         return cloudId;
     }
 
+    /**
+     * The time spent in each stage, or null if the reply did not
+     * carry timestamps.
+     */
+    public ResponseTiming getTiming() {
+        return timing;
+    }
+
     @Override
     public String toString() {
-        return String.format("Response{requestId=%s, workerId=%s, cloudId=%s, text=%s}",
-                             requestId, workerId, cloudId, text);
+        return String.format("Response{requestId=%s, workerId=%s, cloudId=%s, text=%s, timing=%s}",
+                             requestId, workerId, cloudId, text, timing);
     }
 }
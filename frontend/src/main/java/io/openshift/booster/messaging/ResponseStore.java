@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the responses received by the frontend.  Implementations
+ * must be bounded: entries are evicted when the store is full and
+ * expire once they are older than the configured time-to-live.
+ *
+ * Each stored response is assigned a sequence number in arrival
+ * order so that readers can fetch only what is new since their last
+ * read.
+ */
+public interface ResponseStore {
+    /**
+     * Stores the response to the request with the given sequence
+     * number, or to an unknown request if the sequence number is
+     * negative.
+     */
+    void put(long requestSequence, Response response);
+
+    /**
+     * Returns the response for the given request, or null if it has
+     * not arrived yet, has been evicted, or has expired.
+     */
+    Response get(String requestId);
+
+    /**
+     * Removes every entry older than the time-to-live.
+     */
+    void expire(long now);
+
+    /**
+     * Adds up to limit responses, oldest first, that arrived after the
+     * given sequence number to the result list.  A negative sequence
+     * number selects the most recent responses.  Returns the sequence
+     * number to resume from on the next call, which moves past
+     * responses that were evicted or expired even when none are added.
+     */
+    long since(long sequence, int limit, List<Response> result);
+
+    /**
+     * The sequence number of the most recently stored response, or 0
+     * if nothing has been stored yet.
+     */
+    long getSequence();
+
+    int size();
+
+    int getCapacity();
+
+    /**
+     * The number of entries removed to make room for new ones.
+     */
+    long getEvictions();
+
+    /**
+     * The number of entries removed because they outlived the
+     * time-to-live.
+     */
+    long getExpirations();
+
+    /**
+     * A point-in-time copy of the stored responses, keyed by
+     * request ID.
+     */
+    Map<String, Response> snapshot();
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import org.apache.qpid.proton.amqp.Symbol;
+
+import java.util.Map;
+
+/**
+ * Where the time between accepting a request and receiving its
+ * response went, in milliseconds.
+ *
+ * The frontend and the worker stamp the request and the reply with
+ * wall clock times in message annotations.  The outbound and inbound
+ * stages cross from one host to another, so they include any clock
+ * difference between the two and can even come out negative.  The
+ * other stages, and the total, are each measured on a single host.
+ */
+public class ResponseTiming {
+    private final long queued;
+    private final long outbound;
+    private final long processing;
+    private final long replyWait;
+    private final long inbound;
+    private final long total;
+
+    public ResponseTiming(long enqueued, long sent, long received, long processed, long replied,
+                          long arrived) {
+        this.queued = sent - enqueued;
+        this.outbound = received - sent;
+        this.processing = processed - received;
+        this.replyWait = replied - processed;
+        this.inbound = arrived - replied;
+        this.total = arrived - enqueued;
+    }
+
+    /**
+     * Reads the timestamps from the annotations of a reply.  Returns
+     * null if any of them is missing.
+     */
+    public static ResponseTiming fromAnnotations(Map<Symbol, Object> annotations, long arrived) {
+        Object enqueued = annotations.get(TimingAnnotations.ENQUEUE_TIME);
+        Object sent = annotations.get(TimingAnnotations.SEND_TIME);
+        Object received = annotations.get(TimingAnnotations.RECEIVE_TIME);
+        Object processed = annotations.get(TimingAnnotations.PROCESS_TIME);
+        Object replied = annotations.get(TimingAnnotations.REPLY_TIME);
+
+        if (!(enqueued instanceof Long && sent instanceof Long && received instanceof Long
+              && processed instanceof Long && replied instanceof Long)) {
+            return null;
+        }
+
+        return new ResponseTiming((Long) enqueued, (Long) sent, (Long) received, (Long) processed,
+                                  (Long) replied, arrived);
+    }
+
+    /**
+     * Time spent in the frontend's request queue.
+     */
+    public long getQueued() {
+        return queued;
+    }
+
+    /**
+     * Time from sending the request until a worker received it.
+     */
+    public long getOutbound() {
+        return outbound;
+    }
+
+    public long getProcessing() {
+        return processing;
+    }
+
+    /**
+     * Time the reply waited in the worker for sender credit.
+     */
+    public long getReplyWait() {
+        return replyWait;
+    }
+
+    /**
+     * Time from the worker sending the reply until it arrived.
+     */
+    public long getInbound() {
+        return inbound;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResponseTiming{queued=%s, outbound=%s, processing=%s, replyWait=%s, inbound=%s, total=%s}",
+                             queued, outbound, processing, replyWait, inbound, total);
+    }
+}
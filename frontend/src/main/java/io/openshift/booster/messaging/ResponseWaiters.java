@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import io.vertx.core.Handler;
+import io.vertx.reactivex.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parks handlers waiting for the response to a request.  Handlers are
+ * called with the response when it arrives, or with null if it does
+ * not arrive within their timeout.
+ *
+ * Instances are not thread safe and must only be used from the
+ * verticle's context.  Instances in different verticles may share a
+ * counter of the handlers parked across all of them.
+ */
+public class ResponseWaiters {
+  private final Vertx vertx;
+  private final int capacity;
+  private final Map<String, List<Waiter>> waiters = new HashMap<>();
+  private final AtomicInteger total;
+
+  private int size;
+
+  public ResponseWaiters(Vertx vertx, int capacity) {
+    this(vertx, capacity, new AtomicInteger(0));
+  }
+
+  public ResponseWaiters(Vertx vertx, int capacity, AtomicInteger total) {
+    this.vertx = vertx;
+    this.capacity = capacity;
+    this.total = total;
+  }
+
+  /**
+   * Registers a handler for the response to the given request.
+   * Returns null without registering anything if the maximum number
+   * of waiters has been reached.
+   */
+  public Waiter await(String requestId, long timeout, Handler<Response> handler) {
+    if (size >= capacity) {
+      return null;
+    }
+
+    Waiter waiter = new Waiter(requestId, handler);
+
+    waiter.timerId = vertx.setTimer(timeout, id -> {
+      if (remove(waiter)) {
+        handler.handle(null);
+      }
+    });
+
+    waiters.computeIfAbsent(requestId, k -> new ArrayList<>(1)).add(waiter);
+    size++;
+    total.incrementAndGet();
+
+    return waiter;
+  }
+
+  /**
+   * Removes a waiter without calling its handler.
+   */
+  public void cancel(Waiter waiter) {
+    if (remove(waiter)) {
+      vertx.cancelTimer(waiter.timerId);
+    }
+  }
+
+  /**
+   * Passes the response to every handler waiting for it.
+   */
+  public void complete(Response response) {
+    List<Waiter> list = waiters.remove(response.getRequestId());
+
+    if (list == null) {
+      return;
+    }
+
+    size -= list.size();
+    total.addAndGet(-list.size());
+
+    for (Waiter waiter : list) {
+      vertx.cancelTimer(waiter.timerId);
+      waiter.handler.handle(response);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private boolean remove(Waiter waiter) {
+    List<Waiter> list = waiters.get(waiter.requestId);
+
+    if (list == null || !list.remove(waiter)) {
+      return false;
+    }
+
+    if (list.isEmpty()) {
+      waiters.remove(waiter.requestId);
+    }
+
+    size--;
+    total.decrementAndGet();
+    return true;
+  }
+
+  public static class Waiter {
+    private final String requestId;
+    private final Handler<Response> handler;
+    private long timerId;
+
+    Waiter(String requestId, Handler<Response> handler) {
+      this.requestId = requestId;
+      this.handler = handler;
+    }
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free response store indexed by request sequence number.
+ *
+ * The response to request n lives in slot n modulo the capacity, so a
+ * lookup is one array read and no string hashing, and a response
+ * evicts the one for the request capacity places before it.  A second
+ * ring, indexed by arrival sequence, serves readers catching up on
+ * what is new.
+ *
+ * Only responses to this process's requests are stored.  A late
+ * response, to a request older than the one whose response holds its
+ * slot, is dropped rather than evicting the newer response.
+ */
+public class RingResponseStore implements ResponseStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RingResponseStore.class);
+
+    private final String prefix;
+    private final int capacity;
+    private final long ttl;
+    private final AtomicReferenceArray<Entry> slots;
+    private final AtomicReferenceArray<Entry> journal;
+    private final AtomicLong sequence = new AtomicLong(0);
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final AtomicLong expirations = new AtomicLong(0);
+
+    public RingResponseStore(String prefix, int capacity, long ttl) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        this.prefix = prefix;
+        this.capacity = capacity;
+        this.ttl = ttl;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        // Room for every live entry even when some requests are
+        // answered more than once
+        this.journal = new AtomicReferenceArray<>(capacity * 2);
+    }
+
+    @Override
+    public void put(long requestSequence, Response response) {
+        if (requestSequence < 0) {
+            LOGGER.warn("Dropping response to unknown request {0}", response.getRequestId());
+            return;
+        }
+
+        int index = index(requestSequence);
+        Entry entry = new Entry(response, requestSequence, sequence.incrementAndGet(),
+                                System.currentTimeMillis());
+
+        while (true) {
+            Entry previous = slots.get(index);
+
+            if (previous != null && previous.requestSequence > requestSequence) {
+                LOGGER.debug("Dropping late response to request {0}", response.getRequestId());
+                break;
+            }
+
+            if (slots.compareAndSet(index, previous, entry)) {
+                if (previous == null) {
+                    size.incrementAndGet();
+                } else if (previous.requestSequence != requestSequence) {
+                    evictions.incrementAndGet();
+                }
+
+                break;
+            }
+        }
+
+        // Written even for a dropped response, so that readers move
+        // past its arrival sequence number
+        journal.set(journalIndex(entry.sequence), entry);
+    }
+
+    @Override
+    public Response get(String requestId) {
+        long requestSequence = RequestIds.parse(requestId, prefix);
+
+        if (requestSequence < 0) {
+            return null;
+        }
+
+        int index = index(requestSequence);
+        Entry entry = slots.get(index);
+
+        if (entry == null || entry.requestSequence != requestSequence) {
+            return null;
+        }
+
+        if (isExpired(entry, System.currentTimeMillis())) {
+            remove(index, entry);
+            return null;
+        }
+
+        return entry.response;
+    }
+
+    @Override
+    public void expire(long now) {
+        for (int i = 0; i < capacity; i++) {
+            Entry entry = slots.get(i);
+
+            if (entry != null && isExpired(entry, now)) {
+                remove(i, entry);
+            }
+        }
+    }
+
+    @Override
+    public long since(long sequence, int limit, List<Response> result) {
+        long current = this.sequence.get();
+
+        // A cursor from before a restart may be ahead of this store
+        if (sequence > current) {
+            return current;
+        }
+
+        long next = sequence < 0
+            ? Math.max(current - limit, 0)
+            : Math.max(sequence, current - journal.length());
+        // Arrivals before next have been overwritten in the journal, so
+        // the reader resumes after them even if nothing is returned
+        long resume = next;
+        int added = 0;
+
+        while (++next <= current && added < limit) {
+            Entry entry = journal.get(journalIndex(next));
+
+            // Not written yet by a concurrent put, so stop here and
+            // pick it up next time
+            if (entry == null || entry.sequence < next) {
+                break;
+            }
+
+            resume = next;
+
+            // Skip entries that were overwritten by a later arrival, or
+            // that have since been replaced, evicted or expired
+            if (entry.sequence == next && slots.get(index(entry.requestSequence)) == entry) {
+                result.add(entry.response);
+                added++;
+            }
+        }
+
+        return resume;
+    }
+
+    @Override
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    @Override
+    public Map<String, Response> snapshot() {
+        List<Entry> entries = new ArrayList<>();
+
+        for (int i = 0; i < capacity; i++) {
+            Entry entry = slots.get(i);
+
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(e -> e.sequence));
+
+        Map<String, Response> copy = new LinkedHashMap<>();
+
+        for (Entry entry : entries) {
+            copy.put(entry.response.getRequestId(), entry.response);
+        }
+
+        return copy;
+    }
+
+    private void remove(int index, Entry entry) {
+        if (slots.compareAndSet(index, entry, null)) {
+            size.decrementAndGet();
+            expirations.incrementAndGet();
+        }
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    private int journalIndex(long sequence) {
+        return (int) (sequence % journal.length());
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return ttl > 0 && now - entry.created > ttl;
+    }
+
+    private static class Entry {
+        private final Response response;
+        private final long requestSequence;
+        private final long sequence;
+        private final long created;
+
+        Entry(Response response, long requestSequence, long sequence, long created) {
+            this.response = response;
+            this.requestSequence = requestSequence;
+            this.sequence = sequence;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Turns the cumulative counters in worker status updates into rates.
+ *
+ * The most recent updates of each worker are kept in a small ring, from
+ * which its current rate (over the last two updates) and average rate
+ * (over the whole ring) are derived.  Each call to sample adds up the
+ * current rates of the live workers, for the fleet and for each cloud,
+ * and appends them to bounded time series.
+ *
+ * Thread safe.
+ */
+public class WorkerRates {
+    private final int updatesPerWorker;
+    private final int historyLength;
+    private final long liveness;
+    private final Map<String, Deque<WorkerUpdate>> updates = new HashMap<>();
+    private final Deque<RatePoint> fleet = new ArrayDeque<>();
+    private final Map<String, Deque<RatePoint>> clouds = new TreeMap<>();
+
+    /**
+     * Workers whose latest update is older than liveness milliseconds
+     * are left out of the totals.
+     */
+    public WorkerRates(int updatesPerWorker, int historyLength, long liveness) {
+        if (updatesPerWorker < 2) {
+            throw new IllegalArgumentException("At least two updates per worker are needed: "
+                                               + updatesPerWorker);
+        }
+
+        this.updatesPerWorker = updatesPerWorker;
+        this.historyLength = historyLength;
+        this.liveness = liveness;
+    }
+
+    public synchronized void record(WorkerUpdate update) {
+        Deque<WorkerUpdate> ring = updates.computeIfAbsent(update.getWorkerId(),
+                                                           k -> new ArrayDeque<>(updatesPerWorker));
+
+        if (ring.size() == updatesPerWorker) {
+            ring.removeFirst();
+        }
+
+        ring.addLast(update);
+    }
+
+    public synchronized void remove(String workerId) {
+        updates.remove(workerId);
+    }
+
+    /**
+     * Appends the current fleet and per-cloud totals to the time
+     * series.
+     */
+    public synchronized void sample(long now) {
+        RatePoint total = new RatePoint(now);
+        Map<String, RatePoint> byCloud = new HashMap<>();
+
+        for (Deque<WorkerUpdate> ring : updates.values()) {
+            WorkerUpdate latest = ring.getLast();
+
+            if (now - latest.getTimestamp() > liveness) {
+                continue;
+            }
+
+            WorkerRate rate = rate(ring);
+            String cloud = latest.getCloud() == null ? "unknown" : latest.getCloud();
+
+            total.add(rate);
+            byCloud.computeIfAbsent(cloud, k -> new RatePoint(now)).add(rate);
+        }
+
+        append(fleet, total);
+
+        for (Map.Entry<String, Deque<RatePoint>> entry : clouds.entrySet()) {
+            append(entry.getValue(), byCloud.getOrDefault(entry.getKey(), new RatePoint(now)));
+        }
+
+        for (Map.Entry<String, RatePoint> entry : byCloud.entrySet()) {
+            if (!clouds.containsKey(entry.getKey())) {
+                Deque<RatePoint> series = new ArrayDeque<>();
+
+                append(series, entry.getValue());
+                clouds.put(entry.getKey(), series);
+            }
+        }
+    }
+
+    public synchronized Map<String, WorkerRate> getWorkers() {
+        Map<String, WorkerRate> result = new TreeMap<>();
+
+        for (Map.Entry<String, Deque<WorkerUpdate>> entry : updates.entrySet()) {
+            result.put(entry.getKey(), rate(entry.getValue()));
+        }
+
+        return result;
+    }
+
+    public synchronized List<RatePoint> getFleet() {
+        return new ArrayList<>(fleet);
+    }
+
+    public synchronized Map<String, List<RatePoint>> getClouds() {
+        Map<String, List<RatePoint>> result = new TreeMap<>();
+
+        for (Map.Entry<String, Deque<RatePoint>> entry : clouds.entrySet()) {
+            result.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+
+        return result;
+    }
+
+    private void append(Deque<RatePoint> series, RatePoint point) {
+        if (series.size() == historyLength) {
+            series.removeFirst();
+        }
+
+        series.addLast(point);
+    }
+
+    private static WorkerRate rate(Deque<WorkerUpdate> ring) {
+        Iterator<WorkerUpdate> iter = ring.descendingIterator();
+        WorkerUpdate latest = iter.next();
+        WorkerRate rate = new WorkerRate(latest.getCloud());
+
+        if (!iter.hasNext()) {
+            return rate;
+        }
+
+        WorkerUpdate previous = iter.next();
+        WorkerUpdate first = ring.getFirst();
+
+        rate.rate = perSecond(latest.getRequestsProcessed() - previous.getRequestsProcessed(),
+                              latest.getTimestamp() - previous.getTimestamp());
+        rate.errorRate = perSecond(latest.getProcessingErrors() - previous.getProcessingErrors(),
+                                   latest.getTimestamp() - previous.getTimestamp());
+        rate.averageRate = perSecond(latest.getRequestsProcessed() - first.getRequestsProcessed(),
+                                     latest.getTimestamp() - first.getTimestamp());
+
+        return rate;
+    }
+
+    private static double perSecond(long delta, long millis) {
+        // A restarted counter or a clock step gives no meaningful rate
+        if (delta < 0 || millis <= 0) {
+            return 0;
+        }
+
+        return delta * 1000.0 / millis;
+    }
+
+    /**
+     * The rates of one worker, in events per second.
+     */
+    public static class WorkerRate {
+        private final String cloud;
+        private double rate;
+        private double errorRate;
+        private double averageRate;
+
+        WorkerRate(String cloud) {
+            this.cloud = cloud;
+        }
+
+        public String getCloud() {
+            return cloud;
+        }
+
+        /**
+         * Requests processed per second between the last two updates.
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         * Processing errors per second between the last two updates.
+         */
+        public double getErrorRate() {
+            return errorRate;
+        }
+
+        /**
+         * Requests processed per second across every kept update.
+         */
+        public double getAverageRate() {
+            return averageRate;
+        }
+    }
+
+    /**
+     * The combined rates of a group of workers at one point in time.
+     */
+    public static class RatePoint {
+        private final long timestamp;
+        private int workers;
+        private double rate;
+        private double errorRate;
+
+        RatePoint(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        void add(WorkerRate worker) {
+            workers++;
+            rate += worker.rate;
+            errorRate += worker.errorRate;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public double getErrorRate() {
+            return errorRate;
+        }
+    }
+}
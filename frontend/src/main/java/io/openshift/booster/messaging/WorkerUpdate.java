@@ -22,14 +22,16 @@ public class WorkerUpdate {
     private final long timestamp;
     private final long requestsProcessed;
     private final long processingErrors;
+    private final boolean cloudQueue;
 
     public WorkerUpdate(String workerId, String cloud, long timestamp, long requestsProcessed,
-                        long processingErrors) {
+                        long processingErrors, boolean cloudQueue) {
         this.workerId = workerId;
         this.cloud = cloud;
         this.timestamp = timestamp;
         this.requestsProcessed = requestsProcessed;
         this.processingErrors = processingErrors;
+        this.cloudQueue = cloudQueue;
     }
 
     public String getWorkerId() {
@@ -52,9 +54,17 @@ public class WorkerUpdate {
         return processingErrors;
     }
 
+    /**
+     * Whether the worker also takes requests sent to its cloud's own
+     * address.
+     */
+    public boolean isCloudQueue() {
+        return cloudQueue;
+    }
+
     @Override
     public String toString() {
-        return String.format("WorkerUpdate{workerId=%s, cloud=%s, timestamp=%s, requestsProcessed=%s, processingErrors=%s}",
-                             workerId, cloud, timestamp, requestsProcessed, processingErrors);
+        return String.format("WorkerUpdate{workerId=%s, cloud=%s, timestamp=%s, requestsProcessed=%s, processingErrors=%s, cloudQueue=%s}",
+                             workerId, cloud, timestamp, requestsProcessed, processingErrors, cloudQueue);
     }
 }
@@ -25,7 +25,13 @@ const gesso = new Gesso();
 
 class Application {
     constructor() {
-        this.data = null;
+        this.sequence = -1;
+        this.responses = [];
+        this.workers = {};
+        this.maxResponses = 1000;
+        this.fetching = false;
+        this.fetchAgain = false;
+        this.fetchTimer = null;
 
         window.addEventListener("statechange", (event) => {
             this.renderResponses();
@@ -33,27 +39,88 @@ class Application {
         });
 
         window.addEventListener("load", (event) => {
-            this.fetchDataPeriodically();
+            if (window.EventSource) {
+                this.listen();
+            } else {
+                this.fetchDataPeriodically();
+            }
 
             $("#requests").addEventListener("submit", (event) => {
                 this.sendRequest(event.target);
-                this.fetchDataPeriodically();
             });
         });
     }
 
+    listen() {
+        this.events = new EventSource("/api/events");
+
+        this.events.addEventListener("message", (event) => {
+            this.update(JSON.parse(event.data));
+        });
+    }
+
     fetchDataPeriodically() {
-        gesso.fetchPeriodically("/api/data", (data) => {
-            this.data = data;
-            window.dispatchEvent(new Event("statechange"));
+        this.fetchData();
+
+        if (this.fetchTimer == null) {
+            this.fetchTimer = setInterval(() => {
+                this.fetchData();
+            }, 1000);
+        }
+    }
+
+    fetchData() {
+        // Only one fetch at a time, so that two fetches from the same
+        // cursor don't both append the same responses
+        if (this.fetching) {
+            this.fetchAgain = true;
+            return;
+        }
+
+        this.fetching = true;
+
+        let request = gesso.openRequest("GET", "/api/data?since=" + this.sequence, (event) => {
+            if (event.target.status >= 200 && event.target.status < 300) {
+                this.update(JSON.parse(event.target.responseText));
+            }
         });
+
+        request.addEventListener("loadend", (event) => {
+            this.fetching = false;
+
+            if (this.fetchAgain) {
+                this.fetchAgain = false;
+                this.fetchData();
+            }
+        });
+
+        request.send();
+    }
+
+    update(data) {
+        this.sequence = data.sequence;
+        this.workers = data.workers;
+
+        for (let response of data.responses) {
+            this.responses.push(response);
+        }
+
+        if (this.responses.length > this.maxResponses) {
+            this.responses.splice(0, this.responses.length - this.maxResponses);
+        }
+
+        window.dispatchEvent(new Event("statechange"));
+
+        if (data.more && this.events == null) {
+            this.fetchAgain = true;
+        }
     }
 
     sendRequest(form) {
         console.log("Sending request");
 
         let request = gesso.openRequest("POST", "/api/send-request", (event) => {
-            if (event.target.status >= 200 && event.target.status < 300) {
+            if (this.events == null && event.target.status >= 200 && event.target.status < 300) {
                 this.fetchDataPeriodically();
             }
         });
@@ -73,7 +140,7 @@ class Application {
     }
 
     renderResponses() {
-        if (this.data.requestIds.length === 0) {
+        if (this.responses.length === 0) {
             return;
         }
 
@@ -84,13 +151,8 @@ class Application {
         // let headings = ["Worker", "Cloud", "Response"];
         // let rows = [];
 
-        for (let requestId of this.data.requestIds.reverse()) {
-            let response = this.data.responses[requestId];
-
-            if (response == null) {
-                continue;
-            }
-            
+        for (let i = this.responses.length - 1; i >= 0; i--) {
+            let response = this.responses[i];
             let item = gesso.createDiv(div, "response");
             gesso.createDiv(item, "worker", response.workerId);
             gesso.createDiv(item, "cloud", response.cloudId);
@@ -108,7 +170,7 @@ class Application {
     renderWorkers() {
         console.log("Rendering workers");
 
-        if (Object.keys(this.data.workers).length === 0) {
+        if (Object.keys(this.workers).length === 0) {
             let div = gesso.createDiv(null, "#workers");
             let span = gesso.createSpan(div, "placeholder", "None");
 
@@ -122,8 +184,8 @@ class Application {
         let rows = [];
         let now = new Date().getTime();
 
-        for (let workerId in this.data.workers) {
-            let update = this.data.workers[workerId];
+        for (let workerId in this.workers) {
+            let update = this.workers[workerId];
             let cloud = update.cloud;
             // let time = new Date(update.timestamp).toLocaleDateString();
             let requestsProcessed = update.requestsProcessed;
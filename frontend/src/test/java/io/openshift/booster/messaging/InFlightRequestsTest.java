@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.openshift.booster.messaging;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class InFlightRequestsTest {
+    private static PendingRequest request(long sequence) {
+        Request request = new Request();
+
+        request.setText("text " + sequence);
+
+        return new PendingRequest(sequence, "frontend-test/" + sequence, request);
+    }
+
+    @Test
+    public void testPutAndRemove() {
+        InFlightRequests inFlight = new InFlightRequests(4);
+        PendingRequest request = request(1);
+
+        inFlight.put(request);
+
+        assertEquals(1, inFlight.size());
+        assertNull(inFlight.remove(2));
+        assertNull(inFlight.remove(5));
+        assertSame(request, inFlight.remove(1));
+        assertNull(inFlight.remove(1));
+        assertEquals(0, inFlight.size());
+    }
+
+    @Test
+    public void testCollisionDropsOlder() {
+        InFlightRequests inFlight = new InFlightRequests(4);
+        PendingRequest newer = request(5);
+
+        inFlight.put(request(1));
+        inFlight.put(newer);
+
+        assertEquals(1, inFlight.size());
+        assertEquals(1, inFlight.getDropped());
+        assertNull(inFlight.remove(1));
+        assertSame(newer, inFlight.remove(5));
+    }
+
+    @Test
+    public void testExpire() {
+        InFlightRequests inFlight = new InFlightRequests(4);
+        PendingRequest old = request(1);
+        PendingRequest recent = request(2);
+
+        old.setSendTime(1000);
+        recent.setSendTime(3000);
+        inFlight.put(old);
+        inFlight.put(recent);
+        inFlight.expire(2000);
+
+        assertEquals(1, inFlight.size());
+        assertEquals(1, inFlight.getDropped());
+        assertNull(inFlight.remove(1));
+        assertSame(recent, inFlight.remove(2));
+    }
+
+    @Test
+    public void testDrainReturnsAcceptanceOrder() {
+        InFlightRequests inFlight = new InFlightRequests(4);
+        PendingRequest first = request(3);
+        PendingRequest second = request(4);
+        PendingRequest third = request(5);
+
+        inFlight.put(third);
+        inFlight.put(first);
+        inFlight.put(second);
+
+        List<PendingRequest> drained = inFlight.drain();
+
+        assertEquals(Arrays.asList(first, second, third), drained);
+        assertEquals(0, inFlight.size());
+        assertNull(inFlight.remove(3));
+    }
+}
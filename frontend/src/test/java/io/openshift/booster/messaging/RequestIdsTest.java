@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.openshift.booster.messaging;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RequestIdsTest {
+    private static final String PREFIX = "frontend-test/";
+
+    @Test
+    public void testRoundTrip() {
+        assertEquals(0, RequestIds.parse(RequestIds.format(PREFIX, 0), PREFIX));
+        assertEquals(42, RequestIds.parse(RequestIds.format(PREFIX, 42), PREFIX));
+        assertEquals(999999999999999999L, RequestIds.parse(PREFIX + "999999999999999999", PREFIX));
+    }
+
+    @Test
+    public void testForeignPrefix() {
+        assertEquals(-1, RequestIds.parse("frontend-other/42", PREFIX));
+        assertEquals(-1, RequestIds.parse("42", PREFIX));
+    }
+
+    @Test
+    public void testMalformed() {
+        assertEquals(-1, RequestIds.parse(PREFIX, PREFIX));
+        assertEquals(-1, RequestIds.parse(PREFIX + "4x2", PREFIX));
+        assertEquals(-1, RequestIds.parse(PREFIX + "-1", PREFIX));
+        assertEquals(-1, RequestIds.parse(PREFIX + "1000000000000000000", PREFIX));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The contract shared by every response store, in particular that of
+ * the since cursor.
+ */
+public abstract class ResponseStoreTest {
+    protected static final String PREFIX = "frontend-test/";
+
+    protected abstract ResponseStore createStore(int capacity, long ttl);
+
+    protected static void put(ResponseStore store, long requestSequence) {
+        store.put(requestSequence, response(requestSequence));
+    }
+
+    protected static Response response(long requestSequence) {
+        return new Response(RequestIds.format(PREFIX, requestSequence), "worker", "cloud",
+                            "text " + requestSequence, null);
+    }
+
+    protected static List<String> texts(List<Response> responses) {
+        List<String> texts = new ArrayList<>();
+
+        for (Response response : responses) {
+            texts.add(response.getText());
+        }
+
+        return texts;
+    }
+
+    protected static List<String> texts(long... requestSequences) {
+        List<String> texts = new ArrayList<>();
+
+        for (long requestSequence : requestSequences) {
+            texts.add("text " + requestSequence);
+        }
+
+        return texts;
+    }
+
+    @Test
+    public void testGet() {
+        ResponseStore store = createStore(4, 0);
+
+        put(store, 1);
+
+        assertEquals("text 1", store.get(PREFIX + "1").getText());
+        assertNull(store.get(PREFIX + "2"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testSinceOnEmptyStore() {
+        ResponseStore store = createStore(4, 0);
+        List<Response> result = new ArrayList<>();
+
+        assertEquals(0, store.since(-1, 10, result));
+        assertEquals(0, store.since(0, 10, result));
+        assertEquals(0, result.size());
+    }
+
+    @Test
+    public void testSinceReturnsArrivalsAfterCursor() {
+        ResponseStore store = createStore(8, 0);
+
+        put(store, 3);
+        put(store, 1);
+        put(store, 2);
+
+        List<Response> result = new ArrayList<>();
+
+        assertEquals(3, store.since(1, 10, result));
+        assertEquals(texts(1, 2), texts(result));
+    }
+
+    @Test
+    public void testSinceFromNegativeCursorReturnsMostRecent() {
+        ResponseStore store = createStore(8, 0);
+
+        for (int i = 1; i <= 5; i++) {
+            put(store, i);
+        }
+
+        List<Response> result = new ArrayList<>();
+
+        assertEquals(5, store.since(-1, 2, result));
+        assertEquals(texts(4, 5), texts(result));
+    }
+
+    @Test
+    public void testSincePagesThroughArrivals() {
+        ResponseStore store = createStore(8, 0);
+
+        for (int i = 1; i <= 5; i++) {
+            put(store, i);
+        }
+
+        List<Response> first = new ArrayList<>();
+        long cursor = store.since(0, 3, first);
+        List<Response> second = new ArrayList<>();
+
+        assertEquals(texts(1, 2, 3), texts(first));
+        assertEquals(5, store.since(cursor, 3, second));
+        assertEquals(texts(4, 5), texts(second));
+    }
+
+    @Test
+    public void testSinceMovesPastEvictedResponses() {
+        ResponseStore store = createStore(4, 0);
+
+        put(store, 1);
+        put(store, 2);
+
+        List<Response> result = new ArrayList<>();
+        long cursor = store.since(0, 10, result);
+
+        assertEquals(2, cursor);
+
+        for (int i = 3; i <= 12; i++) {
+            put(store, i);
+        }
+
+        result.clear();
+
+        assertEquals(store.getSequence(), store.since(cursor, 10, result));
+        assertEquals(texts(9, 10, 11, 12), texts(result));
+        assertEquals(store.getSequence(), store.since(store.getSequence(), 10, result));
+    }
+
+    @Test
+    public void testSinceMovesPastExpiredResponses() {
+        ResponseStore store = createStore(4, 1000);
+
+        put(store, 1);
+        put(store, 2);
+        store.expire(System.currentTimeMillis() + 10000);
+
+        List<Response> result = new ArrayList<>();
+
+        assertEquals(0, store.size());
+        assertEquals(2, store.since(0, 10, result));
+        assertEquals(0, result.size());
+    }
+
+    @Test
+    public void testSinceClampsCursorAheadOfStore() {
+        ResponseStore store = createStore(4, 0);
+        List<Response> result = new ArrayList<>();
+
+        assertEquals(0, store.since(500, 10, result));
+
+        put(store, 1);
+        put(store, 2);
+
+        assertEquals(2, store.since(500, 10, result));
+        assertEquals(0, result.size());
+        assertNotNull(store.get(PREFIX + "2"));
+    }
+}
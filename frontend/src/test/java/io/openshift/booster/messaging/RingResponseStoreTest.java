@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.openshift.booster.messaging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RingResponseStoreTest extends ResponseStoreTest {
+    @Override
+    protected ResponseStore createStore(int capacity, long ttl) {
+        return new RingResponseStore(PREFIX, capacity, ttl);
+    }
+
+    @Test
+    public void testNewerResponseEvictsOlder() {
+        ResponseStore store = createStore(4, 0);
+
+        put(store, 1);
+        put(store, 5);
+
+        assertNull(store.get(PREFIX + "1"));
+        assertEquals("text 5", store.get(PREFIX + "5").getText());
+        assertEquals(1, store.size());
+        assertEquals(1, store.getEvictions());
+    }
+
+    @Test
+    public void testLateResponseKeepsNewer() {
+        ResponseStore store = createStore(4, 0);
+
+        put(store, 5);
+        put(store, 1);
+
+        assertNull(store.get(PREFIX + "1"));
+        assertEquals("text 5", store.get(PREFIX + "5").getText());
+        assertEquals(1, store.size());
+        assertEquals(0, store.getEvictions());
+    }
+
+    @Test
+    public void testSinceMovesPastLateResponse() {
+        ResponseStore store = createStore(4, 0);
+
+        put(store, 5);
+        put(store, 1);
+
+        List<Response> result = new ArrayList<>();
+
+        assertEquals(2, store.since(0, 10, result));
+        assertEquals(texts(5), texts(result));
+    }
+
+    @Test
+    public void testDuplicateResponseReplaces() {
+        ResponseStore store = createStore(4, 0);
+
+        put(store, 1);
+        store.put(1, new Response(PREFIX + "1", "worker", "cloud", "again", null));
+
+        List<Response> result = new ArrayList<>();
+
+        assertEquals("again", store.get(PREFIX + "1").getText());
+        assertEquals(1, store.size());
+        assertEquals(0, store.getEvictions());
+        assertEquals(2, store.since(0, 10, result));
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    public void testUnknownRequestIsDropped() {
+        ResponseStore store = createStore(4, 0);
+
+        store.put(-1, new Response("elsewhere/1", "worker", "cloud", "text", null));
+
+        assertEquals(0, store.size());
+        assertEquals(0, store.getSequence());
+        assertNull(store.get("elsewhere/1"));
+    }
+}
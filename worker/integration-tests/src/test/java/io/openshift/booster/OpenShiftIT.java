@@ -83,6 +83,7 @@ public class OpenShiftIT {
     await().atMost(10, SECONDS)
       .untilAsserted(() -> given()
         .queryParam("request", requestId)
+        .queryParam("wait", 5000)
         .when()
         .get(responseUrl)
         .then()
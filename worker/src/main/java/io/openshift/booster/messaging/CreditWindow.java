@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+/**
+ * Decides how many requests a receiver may have outstanding, that is
+ * granted as credit or being processed.
+ *
+ * In fixed mode the window never changes.  In adaptive mode it is
+ * sized so that the outstanding requests represent roughly the target
+ * amount of processing time, based on a moving average of observed
+ * processing latency.  Slow workers therefore hold few requests and
+ * leave the rest for their peers, while fast workers keep enough in
+ * hand to stay busy.
+ */
+public class CreditWindow {
+    private static final double SMOOTHING = 0.1;
+
+    private final int min;
+    private final int max;
+    private final boolean adaptive;
+    private final long targetNanos;
+
+    private int window;
+    private double averageNanos;
+
+    public CreditWindow(int initial, int min, int max, boolean adaptive, long targetMillis) {
+        if (min < 1 || min > max) {
+            throw new IllegalArgumentException("Invalid window bounds: " + min + ".." + max);
+        }
+
+        this.min = min;
+        this.max = max;
+        this.adaptive = adaptive;
+        this.targetNanos = targetMillis * 1000 * 1000;
+        this.window = Math.max(min, Math.min(initial, max));
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public long getAverageNanos() {
+        return (long) averageNanos;
+    }
+
+    /**
+     * Records the time taken to process one request.
+     */
+    public void processed(long nanos) {
+        if (averageNanos == 0) {
+            averageNanos = nanos;
+        } else {
+            averageNanos += SMOOTHING * (nanos - averageNanos);
+        }
+
+        if (adaptive) {
+            long size = averageNanos < 1 ? max : (long) Math.ceil(targetNanos / averageNanos);
+            window = (int) Math.max(min, Math.min(size, max));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The messaging endpoints a worker may connect to, in order of
+ * preference, with a record of how each has been doing.
+ *
+ * An endpoint that fails is benched for a backoff period that doubles
+ * with every consecutive failure.  The next endpoint is the most
+ * preferred one that is not benched, or, if they all are, the one that
+ * comes off the bench first.  A successful connection clears the
+ * endpoint's record.
+ *
+ * Instances are not thread safe and must only be used from the
+ * verticle's context.
+ */
+public class EndpointList {
+    public static class Endpoint {
+        private final String host;
+        private final int port;
+        private int failures;
+        private long benchedUntil;
+
+        Endpoint(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+
+    private final List<Endpoint> endpoints;
+    private final long initialDelay;
+    private final long maxDelay;
+
+    public EndpointList(List<Endpoint> endpoints, long initialDelay, long maxDelay) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one endpoint is required");
+        }
+
+        this.endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Parses a comma separated list of host or host:port entries.
+     */
+    public static List<Endpoint> parse(String value, int defaultPort) {
+        List<Endpoint> result = new ArrayList<>();
+
+        for (String entry : value.split(",")) {
+            entry = entry.trim();
+
+            if (entry.isEmpty()) {
+                continue;
+            }
+
+            int colon = entry.lastIndexOf(':');
+
+            if (colon < 0) {
+                result.add(new Endpoint(entry, defaultPort));
+            } else {
+                result.add(new Endpoint(entry.substring(0, colon),
+                                        Integer.parseInt(entry.substring(colon + 1))));
+            }
+        }
+
+        return result;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public Endpoint next(long now) {
+        Endpoint result = null;
+
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.benchedUntil <= now) {
+                return endpoint;
+            }
+
+            if (result == null || endpoint.benchedUntil < result.benchedUntil) {
+                result = endpoint;
+            }
+        }
+
+        return result;
+    }
+
+    public void succeeded(Endpoint endpoint) {
+        endpoint.failures = 0;
+        endpoint.benchedUntil = 0;
+    }
+
+    public void failed(Endpoint endpoint, long now) {
+        endpoint.failures++;
+        endpoint.benchedUntil = now + backoff(endpoint.failures);
+    }
+
+    /**
+     * Returns how long to wait before the given attempt, chosen at
+     * random up to an exponentially growing limit so that workers
+     * that lost the same router do not all come back at once.
+     */
+    public long delay(int attempt) {
+        return ThreadLocalRandom.current().nextLong(backoff(attempt) + 1);
+    }
+
+    private long backoff(int attempt) {
+        return Math.min(initialDelay << Math.min(Math.max(attempt - 1, 0), 20), maxDelay);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * Applies the processors a request asks for, followed by the response
+ * prefix.
+ *
+ * The enabled processors are identified by a bit mask, and the chain
+ * for each mask is built the first time it is seen and then reused, so
+ * the per-request cost is one property lookup per known processor and
+ * one array read.
+ */
+public class ProcessingPipeline {
+    private static final int MAX_PROCESSORS = 16;
+
+    private final String prefix;
+    private final RequestProcessor[] processors;
+    private final AtomicReferenceArray<UnaryOperator<String>> chains;
+
+    public ProcessingPipeline(String prefix, List<RequestProcessor> processors) {
+        if (processors.size() > MAX_PROCESSORS) {
+            throw new IllegalArgumentException("At most " + MAX_PROCESSORS + " processors are supported");
+        }
+
+        List<RequestProcessor> sorted = new ArrayList<>(processors);
+        sorted.sort(Comparator.comparingInt(RequestProcessor::getOrder));
+
+        this.prefix = prefix;
+        this.processors = sorted.toArray(new RequestProcessor[0]);
+        this.chains = new AtomicReferenceArray<>(1 << this.processors.length);
+    }
+
+    /**
+     * Creates a pipeline of every processor registered with the
+     * service loader.
+     */
+    public static ProcessingPipeline load(String prefix) {
+        List<RequestProcessor> processors = new ArrayList<>();
+
+        for (RequestProcessor processor : ServiceLoader.load(RequestProcessor.class)) {
+            processors.add(processor);
+        }
+
+        return new ProcessingPipeline(prefix, processors);
+    }
+
+    public String process(Map<?, ?> properties, String text) {
+        int mask = 0;
+
+        for (int i = 0; i < processors.length; i++) {
+            if (Boolean.TRUE.equals(properties.get(processors[i].getName()))) {
+                mask |= 1 << i;
+            }
+        }
+
+        UnaryOperator<String> chain = chains.get(mask);
+
+        if (chain == null) {
+            chain = compile(mask);
+            chains.set(mask, chain);
+        }
+
+        return chain.apply(text);
+    }
+
+    private UnaryOperator<String> compile(int mask) {
+        List<RequestProcessor> enabled = new ArrayList<>();
+
+        for (int i = 0; i < processors.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                enabled.add(processors[i]);
+            }
+        }
+
+        RequestProcessor[] steps = enabled.toArray(new RequestProcessor[0]);
+        boolean uppercase = false;
+        boolean reverse = false;
+        boolean builtIn = true;
+
+        for (RequestProcessor step : steps) {
+            if (step instanceof UppercaseProcessor) {
+                uppercase = true;
+            } else if (step instanceof ReverseProcessor) {
+                reverse = true;
+            } else {
+                builtIn = false;
+            }
+        }
+
+        // The built-in operations run in that order, so they can be
+        // fused into one pass together with the prefix
+        if (builtIn) {
+            boolean upper = uppercase;
+            boolean rev = reverse;
+
+            return text -> TextTransformer.transform(prefix, text, upper, rev);
+        }
+
+        return text -> {
+            for (RequestProcessor step : steps) {
+                text = step.process(text);
+            }
+
+            return prefix + text;
+        };
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+/**
+ * A text transformation that a request can ask for.  A request enables
+ * a processor by setting the boolean application property named after
+ * it.
+ *
+ * Implementations are discovered with java.util.ServiceLoader, so a new
+ * operation is added by listing it in
+ * META-INF/services/io.openshift.booster.messaging.RequestProcessor.
+ * They must be stateless and thread safe.
+ */
+public interface RequestProcessor {
+    /**
+     * The application property that enables this processor.
+     */
+    String getName();
+
+    /**
+     * Enabled processors are applied in ascending order.
+     */
+    int getOrder();
+
+    String process(String text);
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import io.vertx.proton.ProtonDelivery;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Defers settling deliveries so that their dispositions are written
+ * together.  With a batch size of one, every delivery is settled at
+ * once.
+ *
+ * Deliveries are only settled after they have been processed, and a
+ * batch that is discarded because the connection dropped leaves its
+ * deliveries unsettled, so the broker redelivers them.  Delivery is
+ * therefore still at least once.
+ *
+ * Instances are not thread safe and must only be used from the
+ * verticle's context.
+ */
+public class SettlementBatch {
+    private final int size;
+    private final List<ProtonDelivery> deliveries;
+    private final List<DeliveryState> states;
+
+    public SettlementBatch(int size) {
+        this.size = Math.max(1, size);
+        this.deliveries = new ArrayList<>(this.size);
+        this.states = new ArrayList<>(this.size);
+    }
+
+    public void settle(ProtonDelivery delivery, DeliveryState state) {
+        if (size == 1) {
+            delivery.disposition(state, true);
+            return;
+        }
+
+        deliveries.add(delivery);
+        states.add(state);
+
+        if (deliveries.size() >= size) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        for (int i = 0; i < deliveries.size(); i++) {
+            deliveries.get(i).disposition(states.get(i), true);
+        }
+
+        clear();
+    }
+
+    /**
+     * Drops the pending deliveries without settling them.
+     */
+    public void clear() {
+        deliveries.clear();
+        states.clear();
+    }
+
+    public boolean isBatching() {
+        return size > 1;
+    }
+
+    public int pending() {
+        return deliveries.size();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import java.util.Locale;
+
+/**
+ * Prefixes, uppercases and reverses text in one pass over a single
+ * pre-sized buffer, instead of building an intermediate string for
+ * each step.
+ */
+public final class TextTransformer {
+    private TextTransformer() {
+    }
+
+    /**
+     * Returns prefix followed by the text, uppercased first if
+     * requested and then reversed if requested.  Case mapping is locale
+     * independent, and reversal keeps surrogate pairs intact.
+     */
+    public static String transform(String prefix, String text, boolean uppercase, boolean reverse) {
+        if (uppercase && !isAscii(text)) {
+            // Full case mapping can change the length, as with the
+            // German sharp s, so leave it to the JDK
+            text = text.toUpperCase(Locale.ROOT);
+            uppercase = false;
+        }
+
+        int offset = prefix.length();
+        int length = text.length();
+        char[] buffer = new char[offset + length];
+
+        prefix.getChars(0, offset, buffer, 0);
+
+        if (!reverse) {
+            text.getChars(0, length, buffer, offset);
+
+            if (uppercase) {
+                for (int i = offset; i < buffer.length; i++) {
+                    buffer[i] = toUpperAscii(buffer[i]);
+                }
+            }
+
+            return new String(buffer);
+        }
+
+        for (int i = length - 1, j = offset; i >= 0; i--, j++) {
+            char c = text.charAt(i);
+
+            if (Character.isLowSurrogate(c) && i > 0 && Character.isHighSurrogate(text.charAt(i - 1))) {
+                buffer[j++] = text.charAt(--i);
+                buffer[j] = c;
+            } else {
+                buffer[j] = uppercase ? toUpperAscii(c) : c;
+            }
+        }
+
+        return new String(buffer);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static char toUpperAscii(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+}
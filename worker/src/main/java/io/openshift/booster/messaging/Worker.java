@@ -17,23 +17,35 @@
 
 package io.openshift.booster.messaging;
 
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.WorkerExecutor;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.proton.ProtonClient;
 import io.vertx.proton.ProtonConnection;
+import io.vertx.proton.ProtonDelivery;
 import io.vertx.proton.ProtonReceiver;
 import io.vertx.proton.ProtonSender;
 import io.vertx.reactivex.config.ConfigRetriever;
 import io.vertx.reactivex.core.AbstractVerticle;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
 import org.apache.qpid.proton.amqp.messaging.AmqpValue;
 import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
 import org.apache.qpid.proton.message.Message;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Worker extends AbstractVerticle {
   private static final Logger LOGGER = LoggerFactory.getLogger(Worker.class);
@@ -44,8 +56,68 @@ public class Worker extends AbstractVerticle {
         System.getenv().getOrDefault("AMQ_LOCATION_KEY", "onpremUnknown");
   
 
-  private static final AtomicInteger requestsProcessed = new AtomicInteger(0);
-  private static final AtomicInteger processingErrors = new AtomicInteger(0);
+  // The properties of every reply are the same, so they are built once
+  // and shared
+  private static final ApplicationProperties REPLY_PROPERTIES = replyProperties();
+
+  private static final Metrics.Counter requestsProcessed = Metrics.registry()
+    .counter("worker_requests_processed_total", "Requests processed and replied to");
+  private static final Metrics.Counter processingErrors = Metrics.registry()
+    .counter("worker_processing_errors_total", "Requests that failed processing");
+  private static final Metrics.Histogram processingTime = Metrics.registry()
+    .histogram("worker_processing_time_seconds", "Time spent processing a request");
+  private static final AtomicInteger instanceCount = new AtomicInteger(0);
+
+  // Status updates report the totals for the whole process, so only
+  // one instance sends them: whichever connected instance claimed
+  // them first.  An instance gives up the claim when it loses its
+  // connection, and another connected one takes it over.
+  private static final AtomicReference<Worker> updatesOwner = new AtomicReference<>();
+
+  // Each instance has its own connection, so its own container ID
+  private final String containerId = ID + "-" + instanceCount.incrementAndGet();
+
+  private ProtonClient client;
+  private EndpointList endpoints;
+  private String amqpUser;
+  private String amqpPassword;
+  private int reconnectAttempts;
+
+  // The links of the current connection, or null while disconnected
+  private ProtonConnection connection;
+  private ProtonReceiver requestReceiver;
+  private ProtonReceiver cloudReceiver;
+  private ProtonSender updatesSender;
+
+  // Null unless the worker also takes requests sent to its own cloud
+  private String cloudAddress;
+
+  private ProcessingPipeline pipeline;
+
+  // Proton encodes a message as soon as it is sent, so a single reply
+  // message is refilled and reused for every request on this instance
+  private final Message reply = Message.Factory.create();
+  private final Map<Symbol, Object> replyTimestamps = new HashMap<>(8);
+  private final MessageAnnotations replyAnnotations = new MessageAnnotations(replyTimestamps);
+  private CreditWindow creditWindow;
+  private int inProgress;
+  // The part of inProgress and replies that came from the cloud
+  // receiver
+  private int cloudOutstanding;
+  private SettlementBatch settlements;
+  private final Queue<PendingReply> replies = new ArrayDeque<>();
+  private long settleInterval;
+
+  // Null when requests are processed inline on the event loop
+  private WorkerExecutor executor;
+  private boolean orderedProcessing;
+
+  // Copies of context-confined state, refreshed on the verticle's
+  // context for the gauges, which are read on the scrape's thread
+  private volatile long windowSize;
+  private volatile long receiverCredit;
+  private volatile long inProgressCount;
+  private volatile long pendingReplies;
 
   @Override
   public void start(Future<Void> future) {
@@ -53,27 +125,155 @@ public class Worker extends AbstractVerticle {
       .doOnSuccess(json -> {
         String amqpHost = json.getString("MESSAGING_SERVICE_HOST", "localhost");
         int amqpPort = json.getInteger("MESSAGING_SERVICE_PORT", 5672);
-        String amqpUser = json.getString("MESSAGING_SERVICE_USER", "work-queue");
-        String amqpPassword = json.getString("MESSAGING_SERVICE_PASSWORD", "work-queue");
-
-        ProtonClient client = ProtonClient.create(vertx.getDelegate());
-        client.connect(amqpHost, amqpPort, amqpUser, amqpPassword, result -> {
-          if (result.failed()) {
-            future.fail(result.cause());
-          } else {
-            ProtonConnection conn = result.result();
-            conn.setContainer(ID);
-            conn.open();
-
-            receiveRequests(conn);
-            sendUpdates(conn);
-            future.complete();
-          }
-        });
-      }).flatMap(x -> vertx.createHttpServer().requestHandler(req -> req.response().end("Ready")).rxListen(8080))
+        amqpUser = json.getString("MESSAGING_SERVICE_USER", "work-queue");
+        amqpPassword = json.getString("MESSAGING_SERVICE_PASSWORD", "work-queue");
+
+        // A comma separated list of host[:port] entries, most
+        // preferred first
+        String amqpHosts = json.getString("MESSAGING_SERVICE_HOSTS", amqpHost + ":" + amqpPort);
+        long reconnectDelay = json.getLong("RECONNECT_DELAY", 100L);
+        long maxReconnectDelay = json.getLong("RECONNECT_DELAY_MAX", 10 * 1000L);
+
+        endpoints = new EndpointList(EndpointList.parse(amqpHosts, amqpPort), reconnectDelay,
+          maxReconnectDelay);
+
+        int prefetch = json.getInteger("WORKER_PREFETCH", 10);
+        int minPrefetch = json.getInteger("WORKER_PREFETCH_MIN", 1);
+        int maxPrefetch = json.getInteger("WORKER_PREFETCH_MAX", 1000);
+        boolean adaptive = "adaptive".equals(json.getString("WORKER_CREDIT_MODE", "fixed"));
+        long target = json.getLong("WORKER_PREFETCH_TARGET", 100L);
+
+        pipeline = ProcessingPipeline.load(json.getString("WORKER_RESPONSE_PREFIX", "Hejsan "));
+        creditWindow = new CreditWindow(prefetch, minPrefetch, maxPrefetch, adaptive, target);
+
+        if (json.getBoolean("WORKER_CLOUD_QUEUE_ENABLED", false)) {
+          cloudAddress = "work-requests." + AMQ_LOCATION_KEY;
+        }
+
+        settlements = new SettlementBatch(json.getInteger("WORKER_SETTLE_BATCH", 1));
+        settleInterval = json.getLong("WORKER_SETTLE_INTERVAL", 10L);
+
+        if ("pool".equals(json.getString("WORKER_EXECUTION", "inline"))) {
+          int poolSize = json.getInteger("WORKER_POOL_SIZE", Runtime.getRuntime().availableProcessors());
+          executor = vertx.getDelegate().createSharedWorkerExecutor("request-processing", poolSize);
+          orderedProcessing = json.getBoolean("WORKER_ORDERED", false);
+        }
+
+        // Settle whatever is left of a partial batch once the
+        // interval passes
+        if (settlements.isBatching() && settleInterval > 0) {
+          vertx.setPeriodic(settleInterval, timer -> {
+            if (settlements.pending() > 0) {
+              settlements.flush();
+            }
+          });
+        }
+
+        sendUpdates();
+
+        registerGauges();
+
+        client = ProtonClient.create(vertx.getDelegate());
+        connect(endpoints.getEndpoints().size(), future);
+      }).flatMap(x -> vertx.createHttpServer().requestHandler(req -> {
+        if ("/metrics".equals(req.path())) {
+          req.response()
+            .putHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+            .end(Metrics.registry().scrape());
+        } else {
+          req.response().end("Ready");
+        }
+      }).rxListen(8080))
       .subscribe();
   }
 
+  /**
+   * Connects to the next endpoint.  At startup each endpoint is tried
+   * once before giving up.  Afterwards, when started is null, attempts
+   * go on with backoff until one succeeds.
+   */
+  private void connect(int attempts, Future<Void> started) {
+    EndpointList.Endpoint endpoint = endpoints.next(System.currentTimeMillis());
+
+    client.connect(endpoint.getHost(), endpoint.getPort(), amqpUser, amqpPassword, result -> {
+      if (result.failed()) {
+        LOGGER.warn("{0}: Failed to connect to {1}: {2}", containerId, endpoint,
+          result.cause().getMessage());
+        endpoints.failed(endpoint, System.currentTimeMillis());
+
+        if (started == null) {
+          reconnect();
+        } else if (attempts > 1) {
+          connect(attempts - 1, started);
+        } else {
+          started.fail(result.cause());
+        }
+
+        return;
+      }
+
+      ProtonConnection conn = result.result();
+      conn.setContainer(containerId);
+      conn.openHandler(opened -> {
+        if (opened.succeeded()) {
+          endpoints.succeeded(endpoint);
+          reconnectAttempts = 0;
+
+          LOGGER.info("{0}: Connected to {1}", containerId, endpoint);
+        }
+      });
+      conn.disconnectHandler(c -> connectionLost(c, endpoint));
+      // Dropping the socket of a connection the peer closed ends up
+      // in the disconnect handler too
+      conn.closeHandler(closed -> conn.disconnect());
+      conn.open();
+
+      connection = conn;
+
+      receiveRequests(conn);
+
+      updatesSender = conn.createSender("worker-updates");
+      updatesSender.open();
+
+      if (started != null) {
+        started.complete();
+      }
+    });
+  }
+
+  private void connectionLost(ProtonConnection conn, EndpointList.Endpoint endpoint) {
+    if (conn != connection) {
+      return;
+    }
+
+    connection = null;
+    requestReceiver = null;
+    cloudReceiver = null;
+    updatesSender = null;
+    updatesOwner.compareAndSet(this, null);
+
+    // The broker redelivers every request this worker had not
+    // settled, so the replies and settlements held for them are
+    // dropped, and requests still being processed are ignored when
+    // they complete
+    settlements.clear();
+    replies.clear();
+    inProgress = 0;
+    cloudOutstanding = 0;
+
+    endpoints.failed(endpoint, System.currentTimeMillis());
+
+    LOGGER.warn("{0}: Lost connection to {1}", containerId, endpoint);
+
+    reconnect();
+  }
+
+  private void reconnect() {
+    long delay = endpoints.delay(++reconnectAttempts);
+
+    vertx.setTimer(delay, timer -> connect(0, null));
+  }
+
   private void receiveRequests(ProtonConnection conn) {
     // Ordinarily, a sender or receiver is tied to a named message
     // source or target. By contrast, a null sender transmits
@@ -81,86 +281,346 @@ public class Worker extends AbstractVerticle {
     // destination using the "to" property of the message.
     ProtonSender sender = conn.createSender(null);
 
-    ProtonReceiver receiver = conn.createReceiver("work-requests");
-    
+    requestReceiver = createReceiver(conn, sender, "work-requests");
+
+    // Frontends that route by cloud send to this address, but plain
+    // work-requests is always served too
+    if (cloudAddress != null) {
+      cloudReceiver = createReceiver(conn, sender, cloudAddress);
+    }
+
+    // Replies that found the sender without credit are sent in one
+    // pass when credit returns
+    sender.sendQueueDrainHandler(s -> {
+      sendReplies(sender);
+      flow();
+    });
+
+    sender.open();
+    flow();
+  }
+
+  private ProtonReceiver createReceiver(ProtonConnection conn, ProtonSender sender, String address) {
+    // Credit is granted by hand, as requests complete, so that the
+    // broker never pushes more than the window to this worker
+    ProtonReceiver receiver = conn.createReceiver(address);
+    receiver.setPrefetch(0);
+    receiver.setAutoAccept(false);
+
     receiver.handler((delivery, request) -> {
-      LOGGER.info("{0}: Receiving request {1}", ID, request);
+      LOGGER.info("{0}: Receiving request {1}", containerId, request);
+      handleRequest(sender, receiver, delivery, request);
+    });
+
+    receiver.open();
+
+    return receiver;
+  }
+
+  /**
+   * Processes the request, inline or on the worker pool, and then
+   * replies and settles the delivery back on this verticle's context.
+   */
+  private void handleRequest(ProtonSender sender, ProtonReceiver receiver,
+                             ProtonDelivery delivery, Message request) {
+    long received = System.currentTimeMillis();
+
+    inProgress++;
+
+    if (receiver == cloudReceiver) {
+      cloudOutstanding++;
+    }
+
+    if (executor == null) {
+      long start = System.nanoTime();
+      String responseBody = null;
+      Throwable failure = null;
+
+      try {
+        responseBody = processRequest(request);
+      } catch (Exception e) {
+        failure = e;
+      }
+
+      requestProcessed(sender, receiver, delivery, request, received, System.nanoTime() - start,
+        responseBody, failure);
+      return;
+    }
+
+    long[] elapsed = {0};
+
+    Handler<Future<String>> processing = future -> {
+      long start = System.nanoTime();
       String responseBody;
 
       try {
         responseBody = processRequest(request);
       } catch (Exception e) {
-        LOGGER.error("{0}: Failed processing message: {1}", ID, e.getMessage());
-        processingErrors.incrementAndGet();
+        elapsed[0] = System.nanoTime() - start;
+        future.fail(e);
         return;
       }
 
-      Map<String, Object> props = new HashMap<>();
-      props.put("workerId", conn.getContainer());
-      props.put("AMQ_LOCATION_KEY",AMQ_LOCATION_KEY);
+      elapsed[0] = System.nanoTime() - start;
+      future.complete(responseBody);
+    };
 
-      Message response = Message.Factory.create();
-      response.setAddress(request.getReplyTo());
-      response.setCorrelationId(request.getMessageId());
-      response.setBody(new AmqpValue(responseBody));
-      response.setApplicationProperties(new ApplicationProperties(props));
+    Handler<AsyncResult<String>> completion = result -> requestProcessed(sender, receiver, delivery,
+      request, received, elapsed[0], result.result(), result.cause());
 
-      sender.send(response);
+    executor.executeBlocking(processing, orderedProcessing, completion);
+  }
 
-      requestsProcessed.incrementAndGet();
+  /**
+   * Replies to a processed request, or rejects it if processing
+   * failed.  Runs on this verticle's context.
+   */
+  private void requestProcessed(ProtonSender sender, ProtonReceiver receiver, ProtonDelivery delivery,
+                                Message request, long received, long elapsed, String responseBody,
+                                Throwable failure) {
+    creditWindow.processed(elapsed);
+    processingTime.record(elapsed);
 
-      LOGGER.info("{0}: Sent {1}", ID, response);
-    });
+    // The connection the request came in on has been lost
+    if (receiver != requestReceiver && receiver != cloudReceiver) {
+      return;
+    }
 
-    sender.open();
-    receiver.open();
+    inProgress--;
+
+    boolean fromCloud = receiver == cloudReceiver;
+
+    if (failure != null) {
+      LOGGER.error("{0}: Failed processing message: {1}", containerId, failure.getMessage());
+      processingErrors.increment();
+      settlements.settle(delivery, new Rejected());
+      cloudRequestDone(fromCloud);
+      flow();
+      return;
+    }
+
+    MessageAnnotations annotations = request.getMessageAnnotations();
+    long enqueueTime = timestamp(annotations, TimingAnnotations.ENQUEUE_TIME);
+    long sendTime = timestamp(annotations, TimingAnnotations.SEND_TIME);
+    long processed = System.currentTimeMillis();
+
+    if (replies.isEmpty() && !sender.sendQueueFull()) {
+      setReplyTimestamps(enqueueTime, sendTime, received, processed);
+      sendReply(sender, delivery, request.getReplyTo(), request.getMessageId(), responseBody);
+      cloudRequestDone(fromCloud);
+    } else {
+      replies.add(new PendingReply(delivery, fromCloud, request.getReplyTo(), request.getMessageId(),
+        responseBody, enqueueTime, sendTime, received, processed));
+    }
+
+    flow();
   }
 
-  private String processRequest(Message request) {
-    Map props = request.getApplicationProperties().getValue();
-    boolean uppercase = (boolean) props.get("uppercase");
-    boolean reverse = (boolean) props.get("reverse");
-    String text = (String) ((AmqpValue) request.getBody()).getValue();
+  private void sendReplies(ProtonSender sender) {
+    while (!replies.isEmpty() && !sender.sendQueueFull()) {
+      PendingReply pending = replies.poll();
+      setReplyTimestamps(pending.enqueueTime, pending.sendTime, pending.received, pending.processed);
+      sendReply(sender, pending.delivery, pending.address, pending.correlationId, pending.body);
+      cloudRequestDone(pending.fromCloud);
+    }
+  }
+
+  /**
+   * Stops counting a finished request against the cloud receiver's
+   * share of the window, if it came from the cloud.
+   */
+  private void cloudRequestDone(boolean fromCloud) {
+    if (fromCloud) {
+      cloudOutstanding--;
+    }
+  }
+
+  /**
+   * Refills the reused reply annotations.  Frontend times that the
+   * request did not carry are left out.
+   */
+  private void setReplyTimestamps(long enqueueTime, long sendTime, long received, long processed) {
+    replyTimestamps.clear();
+
+    if (enqueueTime > 0) {
+      replyTimestamps.put(TimingAnnotations.ENQUEUE_TIME, enqueueTime);
+    }
+
+    if (sendTime > 0) {
+      replyTimestamps.put(TimingAnnotations.SEND_TIME, sendTime);
+    }
+
+    replyTimestamps.put(TimingAnnotations.RECEIVE_TIME, received);
+    replyTimestamps.put(TimingAnnotations.PROCESS_TIME, processed);
+  }
+
+  private static long timestamp(MessageAnnotations annotations, Symbol key) {
+    if (annotations == null || annotations.getValue() == null) {
+      return 0;
+    }
+
+    Object value = annotations.getValue().get(key);
+
+    return value instanceof Long ? (Long) value : 0;
+  }
+
+  /**
+   * Sends a reply, stamped with the current reply timestamps, and
+   * then settles the request it answers.
+   */
+  private void sendReply(ProtonSender sender, ProtonDelivery delivery, String address,
+                         Object correlationId, String body) {
+    replyTimestamps.put(TimingAnnotations.REPLY_TIME, System.currentTimeMillis());
+
+    Message response = reply;
+    response.setAddress(address);
+    response.setCorrelationId(correlationId);
+    response.setBody(new AmqpValue(body));
+    response.setApplicationProperties(REPLY_PROPERTIES);
+    response.setMessageAnnotations(replyAnnotations);
+
+    sender.send(response);
+
+    settlements.settle(delivery, Accepted.getInstance());
+
+    requestsProcessed.increment();
+
+    LOGGER.info("{0}: Sent {1}", containerId, response);
+  }
+
+  /**
+   * Tops up the receivers' credit so that the requests granted, those
+   * being processed, and those whose replies are waiting for sender
+   * credit fill the credit window.  A congested reply path therefore
+   * stops new requests from arriving.
+   *
+   * With a cloud receiver as well, the window is split in half, at
+   * least one each, and each receiver is topped up against its own
+   * share.  Credit left idle on one link then cannot starve the other.
+   */
+  private void flow() {
+    if (requestReceiver == null) {
+      return;
+    }
+
+    int window = creditWindow.getWindow();
+    int outstanding = inProgress + replies.size();
 
-    if (uppercase) {
-      text = text.toUpperCase();
+    if (cloudReceiver == null) {
+      topUp(requestReceiver, window, outstanding);
+      return;
     }
 
-    if (reverse) {
-      text = new StringBuilder(text).reverse().toString();
+    int cloudShare = Math.max(1, window / 2);
+
+    topUp(cloudReceiver, cloudShare, cloudOutstanding);
+    topUp(requestReceiver, Math.max(1, window - cloudShare), outstanding - cloudOutstanding);
+  }
+
+  private static void topUp(ProtonReceiver receiver, int share, int outstanding) {
+    int deficit = share - receiver.getCredit() - outstanding;
+
+    if (deficit > 0) {
+      receiver.flow(deficit);
     }
-    return "Hejsan " + text;
-    // return text;
   }
 
-  private void sendUpdates(ProtonConnection conn) {
-    ProtonSender sender = conn.createSender("worker-updates");
+  private void registerGauges() {
+    Metrics metrics = Metrics.registry();
+    String labels = "instance=\"" + containerId + "\"";
+
+    metrics.gauge("worker_credit_window", "Requests this worker may have outstanding", labels,
+      () -> windowSize);
+    metrics.gauge("worker_receiver_credit", "Credit granted to the request receivers", labels,
+      () -> receiverCredit);
+    metrics.gauge("worker_requests_in_progress", "Requests being processed", labels,
+      () -> inProgressCount);
+    metrics.gauge("worker_pending_replies", "Replies waiting for sender credit", labels,
+      () -> pendingReplies);
 
+    vertx.setPeriodic(1000, timer -> {
+      ProtonReceiver receiver = requestReceiver;
+      ProtonReceiver cloud = cloudReceiver;
+
+      windowSize = creditWindow.getWindow();
+      receiverCredit = (receiver == null ? 0 : receiver.getCredit()) + (cloud == null ? 0 : cloud.getCredit());
+      inProgressCount = inProgress;
+      pendingReplies = replies.size();
+    });
+  }
+
+  private static ApplicationProperties replyProperties() {
+    Map<String, Object> props = new HashMap<>();
+    props.put("workerId", ID);
+    props.put("AMQ_LOCATION_KEY", AMQ_LOCATION_KEY);
+
+    return new ApplicationProperties(Collections.unmodifiableMap(props));
+  }
+
+  private String processRequest(Message request) {
+    Map props = request.getApplicationProperties().getValue();
+    String text = (String) ((AmqpValue) request.getBody()).getValue();
+
+    return pipeline.process(props, text);
+  }
+
+  private void sendUpdates() {
     vertx.setPeriodic(5000, timer -> {
-      if (conn.isDisconnected()) {
-        vertx.cancelTimer(timer);
+      // The sender is replaced on every reconnect
+      ProtonSender sender = updatesSender;
+
+      if (sender == null) {
+        updatesOwner.compareAndSet(this, null);
         return;
       }
 
-      if (sender.sendQueueFull()) {
+      updatesOwner.compareAndSet(null, this);
+
+      if (updatesOwner.get() != this || sender.sendQueueFull()) {
         return;
       }
 
       LOGGER.debug("{0}: Sending status update", ID);
 
       Map<String, Object> properties = new HashMap<>();
-      properties.put("workerId", conn.getContainer());
+      properties.put("workerId", ID);
       properties.put("AMQ_LOCATION_KEY",AMQ_LOCATION_KEY);
       properties.put("timestamp", System.currentTimeMillis());
-      properties.put("requestsProcessed", (long) requestsProcessed.get());
-      properties.put("processingErrors", (long) processingErrors.get());
+      properties.put("requestsProcessed", requestsProcessed.get());
+      properties.put("processingErrors", processingErrors.get());
+      // Frontends only route to clouds whose workers listen on the
+      // cloud's own address
+      properties.put("cloudQueue", cloudAddress != null);
 
       Message message = Message.Factory.create();
       message.setApplicationProperties(new ApplicationProperties(properties));
 
       sender.send(message);
     });
+  }
 
-    sender.open();
+  private static class PendingReply {
+    private final ProtonDelivery delivery;
+    private final boolean fromCloud;
+    private final String address;
+    private final Object correlationId;
+    private final String body;
+    private final long enqueueTime;
+    private final long sendTime;
+    private final long received;
+    private final long processed;
+
+    PendingReply(ProtonDelivery delivery, boolean fromCloud, String address, Object correlationId,
+                 String body, long enqueueTime, long sendTime, long received, long processed) {
+      this.delivery = delivery;
+      this.fromCloud = fromCloud;
+      this.address = address;
+      this.correlationId = correlationId;
+      this.body = body;
+      this.enqueueTime = enqueueTime;
+      this.sendTime = sendTime;
+      this.received = received;
+      this.processed = processed;
+    }
   }
 }
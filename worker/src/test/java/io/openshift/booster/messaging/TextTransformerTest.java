@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.openshift.booster.messaging;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextTransformerTest {
+    private static final String PREFIX = "Hejsan ";
+
+    private static final String[] TEXTS = {
+        "",
+        "a",
+        "hello, world",
+        "MiXeD cAsE 123",
+        // Sharp s uppercases to two characters
+        "stra\u00DFe",
+        "\u00DF\u00DF\u00DF",
+        // Non-ASCII letters with simple case mappings
+        "\u00E5\u00E4\u00F6 \u00E7\u00E9",
+        // Supplementary characters, as surrogate pairs
+        "a\uD83D\uDE00b",
+        "\uD801\uDC28\uD801\uDC29",
+        // Lone surrogates
+        "x\uD83Dy",
+        "x\uDE00y",
+        "\uDE00\uD83D",
+        "\uD83D",
+    };
+
+    @Test
+    public void testPrefixOnly() {
+        for (String text : TEXTS) {
+            assertEquals(PREFIX + text, TextTransformer.transform(PREFIX, text, false, false));
+        }
+    }
+
+    @Test
+    public void testUppercase() {
+        for (String text : TEXTS) {
+            assertEquals(PREFIX + text.toUpperCase(Locale.ROOT),
+                         TextTransformer.transform(PREFIX, text, true, false));
+        }
+    }
+
+    @Test
+    public void testReverse() {
+        for (String text : TEXTS) {
+            assertEquals(PREFIX + new StringBuilder(text).reverse(),
+                         TextTransformer.transform(PREFIX, text, false, true));
+        }
+    }
+
+    @Test
+    public void testUppercaseAndReverse() {
+        for (String text : TEXTS) {
+            assertEquals(PREFIX + new StringBuilder(text.toUpperCase(Locale.ROOT)).reverse(),
+                         TextTransformer.transform(PREFIX, text, true, true));
+        }
+    }
+
+    @Test
+    public void testPrefixIsNotTransformed() {
+        assertEquals("abc: OLLEH", TextTransformer.transform("abc: ", "hello", true, true));
+    }
+}